@@ -0,0 +1,81 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Hit ratio under a shifting workload. Each iteration draws Zipfian keys from a
+ * fresh key range, so the previous iteration's hot keys go cold. The per-iteration
+ * {@code hits} and {@code misses} counters show whether the cache recovers:
+ * without aging the old hot set stays pinned and the new one keeps missing.
+ * Run with {@code -bm ss} or a fixed {@code -r} so iterations are comparable.
+ */
+@State(Scope.Thread)
+@Threads(1)
+public class AgingBenchmark {
+    private static final int SAMPLES = 1 << 20;
+
+    @Param({"10000"})
+    public int capacity;
+
+    @Param({"0", "100000"})
+    public long agingPeriod;
+
+    private LFUCache<Integer, Integer> cache;
+    private int[] sequence;
+    private Integer[] keys;
+    private int index;
+    private int shift;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HitCounters {
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = LFUCache.<Integer, Integer>builder()
+                .capacity(capacity)
+                .agingPeriod(agingPeriod)
+                .build();
+        sequence = KeyDistribution.ZIPFIAN.sample(capacity * 10, SAMPLES, 42);
+        keys = new Integer[capacity * 10];
+        shift = 0;
+    }
+
+    @Setup(Level.Iteration)
+    public void shiftWorkload() {
+        int offset = shift++ * keys.length;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = offset + i;
+        }
+        index = 0;
+    }
+
+    @Benchmark
+    public Integer access(HitCounters counters) {
+        Integer key = keys[sequence[index++ & (SAMPLES - 1)]];
+        Integer value = cache.get(key);
+        if (value != null) {
+            counters.hits++;
+            return value;
+        }
+        counters.misses++;
+        cache.put(key, key);
+        return key;
+    }
+}
@@ -0,0 +1,55 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+
+/**
+ * Runs {@link HitPathBenchmark} under {@code -prof gc} and fails when a cache hit
+ * allocates. The only allocation left on the hit path is the FreqNode created the
+ * first time a frequency is reached, which amortizes to a small fraction of a byte
+ * per operation, hence the one byte threshold.
+ */
+public class AllocationCheck {
+    private static final double MAX_BYTES_PER_OP = 1.0;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(HitPathBenchmark.class.getName())
+                .mode(Mode.Throughput)
+                .forks(1)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(1))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        boolean failed = false;
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (allocation == null) {
+                throw new IllegalStateException("GC profiler did not report gc.alloc.rate.norm for " + benchmark);
+            }
+            double bytesPerOp = allocation.getScore();
+            System.out.printf("%s allocates %.3f B/op%n", benchmark, bytesPerOp);
+            if (bytesPerOp > MAX_BYTES_PER_OP) {
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.err.println("Cache hit path allocates more than " + MAX_BYTES_PER_OP + " B/op");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the selected benchmarks once per thread count, reporting throughput,
+ * sampled latency percentiles (p50/p99/p99.9) and the GC profiler's allocation rate.
+ *
+ * <p>Arguments: include regex, comma separated thread counts, report directory.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "org.ducanh.*Benchmark.*";
+        String threads = args.length > 1 ? args[1] : "1,4,16,64";
+        File reportDir = new File(args.length > 2 ? args[2] : "build/reports/jmh");
+        reportDir.mkdirs();
+
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .mode(Mode.Throughput)
+                    .mode(Mode.SampleTime)
+                    .timeUnit(TimeUnit.MICROSECONDS)
+                    .forks(1)
+                    .warmupIterations(3)
+                    .measurementIterations(5)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(reportDir, "results-" + threadCount + "-threads.json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
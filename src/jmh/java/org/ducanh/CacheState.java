@@ -0,0 +1,69 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared cache under test. The key space is twice the capacity and the cache is
+ * pre-filled, so roughly half of the uniform lookups miss. Keys are boxed once up
+ * front so that allocation reported by {@code -prof gc} belongs to the cache.
+ * {@code sharded} runs the same workload against a {@link ShardedLFUCache} with
+ * two segments per available processor, {@code buffered} against an
+ * {@link LFUCache} with buffered reads and {@code stats} against one that records
+ * statistics.
+ */
+@State(Scope.Benchmark)
+public class CacheState {
+    @Param({"1000", "100000"})
+    public int capacity;
+
+    @Param({"uniform", "zipfian"})
+    public String distribution;
+
+    @Param({"lfu", "sharded", "buffered", "stats", "logarithmic"})
+    public String implementation;
+
+    public Cache<Integer, Integer> cache;
+    public Integer[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int keySpace = capacity * 2;
+        keys = new Integer[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            keys[i] = i;
+        }
+        switch (implementation) {
+            case "sharded":
+                cache = new ShardedLFUCache<>(capacity);
+                break;
+            case "buffered":
+                cache = LFUCache.<Integer, Integer>builder().capacity(capacity).bufferedReads(true).build();
+                break;
+            case "stats":
+                cache = LFUCache.<Integer, Integer>builder().capacity(capacity).recordStats().build();
+                break;
+            case "logarithmic":
+                cache = LFUCache.<Integer, Integer>builder().capacity(capacity).logarithmicFrequency(10).build();
+                break;
+            default:
+                cache = new LFUCache<>(capacity);
+        }
+        for (int i = 0; i < capacity; i++) {
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    public int keySpace() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,60 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Inserts of new keys into a full cache, so every operation evicts. With
+ * {@code skewed} the resident entries are spread over {@code capacity / 10}
+ * distinct frequencies, which used to make eviction walk the frequency list.
+ */
+@State(Scope.Benchmark)
+public class EvictionBenchmark {
+    private static final int MISSES = 1 << 16;
+
+    @Param({"10000"})
+    public int capacity;
+
+    @Param({"flat", "skewed"})
+    public String frequencies;
+
+    private LFUCache<Integer, Integer> cache;
+    private Integer[] newKeys;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new LFUCache<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            cache.put(i, i);
+        }
+        if ("skewed".equals(frequencies)) {
+            int levels = capacity / 10;
+            for (int i = 0; i < capacity; i++) {
+                for (int hits = i % levels; hits > 0; hits--) {
+                    cache.get(i);
+                }
+            }
+        }
+        newKeys = new Integer[MISSES];
+        for (int i = 0; i < MISSES; i++) {
+            newKeys[i] = capacity + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Benchmark
+    public void insertEvicting() {
+        Integer key = newKeys[index++ & (MISSES - 1)];
+        cache.put(key, key);
+    }
+}
@@ -0,0 +1,57 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Every lookup is a hit: the key space equals the capacity and the cache is
+ * pre-filled. Used by {@link AllocationCheck} to verify the hit path allocates nothing,
+ * with reads promoted inline and through the read buffer.
+ */
+@State(Scope.Benchmark)
+public class HitPathBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+
+    @Param({"false", "true"})
+    public boolean bufferedReads;
+
+    private LFUCache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[CAPACITY];
+        cache = LFUCache.<Integer, Integer>builder().capacity(CAPACITY).bufferedReads(bufferedReads).build();
+        for (int i = 0; i < CAPACITY; i++) {
+            keys[i] = i;
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor) {
+        return cache.get(keys[cursor.index++ & MASK]);
+    }
+
+    @Benchmark
+    public void update(Cursor cursor) {
+        Integer key = keys[cursor.index++ & MASK];
+        cache.put(key, key);
+    }
+}
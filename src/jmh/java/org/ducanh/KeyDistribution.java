@@ -0,0 +1,33 @@
+package org.ducanh;
+
+import java.util.SplittableRandom;
+
+/**
+ * Key distributions used by the benchmarks. Samples are precomputed so that
+ * generating a key never shows up in the measured operation.
+ */
+public enum KeyDistribution {
+    UNIFORM {
+        @Override
+        public int[] sample(int keySpace, int count, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = random.nextInt(keySpace);
+            }
+            return keys;
+        }
+    },
+    ZIPFIAN {
+        @Override
+        public int[] sample(int keySpace, int count, long seed) {
+            return new ZipfianGenerator(keySpace, ZipfianGenerator.DEFAULT_THETA, seed).sample(count);
+        }
+    };
+
+    public abstract int[] sample(int keySpace, int count, long seed);
+
+    public static KeyDistribution of(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,32 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Per-thread, precomputed sequence of keys drawn from the configured distribution.
+ */
+@State(Scope.Thread)
+public class KeyStream {
+    private static final int SAMPLES = 1 << 16;
+    private static final int MASK = SAMPLES - 1;
+
+    private Integer[] keys;
+    private int[] sequence;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp(CacheState state, ThreadParams threadParams) {
+        keys = state.keys;
+        sequence = KeyDistribution.of(state.distribution)
+                .sample(state.keySpace(), SAMPLES, 31L * threadParams.getThreadIndex() + 17);
+        index = 0;
+    }
+
+    public Integer next() {
+        return keys[sequence[index++ & MASK]];
+    }
+}
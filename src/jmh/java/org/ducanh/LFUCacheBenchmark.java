@@ -0,0 +1,32 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Single-operation throughput and latency of {@link LFUCache}. Thread counts are
+ * supplied by the runner ({@code ./gradlew jmhSweep}) or with {@code -t}.
+ */
+public class LFUCacheBenchmark {
+
+    @Benchmark
+    public Integer get(CacheState state, KeyStream keys) {
+        return state.cache.get(keys.next());
+    }
+
+    @Benchmark
+    public void put(CacheState state, KeyStream keys) {
+        Integer key = keys.next();
+        state.cache.put(key, key);
+    }
+
+    /**
+     * Removes a key and inserts it back, so the cache stays populated for the
+     * whole measurement instead of draining after the first pass.
+     */
+    @Benchmark
+    public void remove(CacheState state, KeyStream keys) {
+        Integer key = keys.next();
+        state.cache.remove(key);
+        state.cache.put(key, key);
+    }
+}
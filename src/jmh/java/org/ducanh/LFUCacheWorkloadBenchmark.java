@@ -0,0 +1,52 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.SplittableRandom;
+
+/**
+ * Mixed get/put workloads: read-heavy is 90% gets, write-heavy is 90% puts.
+ */
+public class LFUCacheWorkloadBenchmark {
+    private static final int SAMPLES = 1 << 16;
+    private static final int MASK = SAMPLES - 1;
+
+    @State(Scope.Thread)
+    public static class Operations {
+        @Param({"read_heavy", "write_heavy"})
+        public String workload;
+
+        private boolean[] reads;
+        private int index;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            double readRatio = "read_heavy".equals(workload) ? 0.9 : 0.1;
+            SplittableRandom random = new SplittableRandom(threadParams.getThreadIndex());
+            reads = new boolean[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                reads[i] = random.nextDouble() < readRatio;
+            }
+        }
+
+        boolean nextIsRead() {
+            return reads[index++ & MASK];
+        }
+    }
+
+    @Benchmark
+    public Integer mixed(CacheState state, KeyStream keys, Operations operations) {
+        Integer key = keys.next();
+        if (operations.nextIsRead()) {
+            return state.cache.get(key);
+        }
+        state.cache.put(key, key);
+        return key;
+    }
+}
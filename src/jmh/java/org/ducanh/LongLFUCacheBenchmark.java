@@ -0,0 +1,66 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares {@link LongLFUCache} with an {@code LFUCache<Long, Long>} on the same
+ * zipfian key sequence over twice the capacity. Keys for the boxed cache are not
+ * pre-boxed, so its numbers include the boxing a caller with {@code long} ids pays.
+ */
+@State(Scope.Benchmark)
+public class LongLFUCacheBenchmark {
+    private static final int SAMPLES = 1 << 16;
+    private static final int MASK = SAMPLES - 1;
+
+    @Param({"100000"})
+    public int capacity;
+
+    private LongLFUCache primitive;
+    private LFUCache<Long, Long> boxed;
+    private long[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        primitive = new LongLFUCache(capacity);
+        boxed = new LFUCache<>(capacity);
+        int[] sequence = KeyDistribution.ZIPFIAN.sample(capacity * 2, SAMPLES, 17);
+        keys = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            keys[i] = sequence[i] * 1_000_003L;
+        }
+        for (long key : keys) {
+            primitive.put(key, key);
+            boxed.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public long primitiveGetOrPut(Cursor cursor) {
+        long key = keys[cursor.index++ & MASK];
+        long value = primitive.getOrDefault(key, -1);
+        if (value == -1) {
+            primitive.put(key, key);
+        }
+        return value;
+    }
+
+    @Benchmark
+    public Long boxedGetOrPut(Cursor cursor) {
+        long key = keys[cursor.index++ & MASK];
+        Long value = boxed.get(key);
+        if (value == null) {
+            boxed.put(key, key);
+        }
+        return value;
+    }
+}
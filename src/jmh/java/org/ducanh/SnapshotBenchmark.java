@@ -0,0 +1,86 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to warm a cache of {@code entries} long keys: {@code restore} reads a snapshot
+ * and rebuilds the frequency list directly, {@code replay} reaches the same state
+ * through a put and the recorded number of gets per key. {@code snapshot} writes the
+ * file. Run {@code -p entries=10000000} with a heap of several GB for the 10M figure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SnapshotBenchmark {
+
+    @Param({"1000000"})
+    public int entries;
+
+    private LFUCache<Long, Long> cache;
+    private int[] gets;
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cache = new LFUCache<>(entries);
+        gets = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            long key = i;
+            cache.put(key, key);
+            // Half the keys at frequency 1, a quarter at 2 and so on
+            gets[i] = Integer.numberOfTrailingZeros(i + 1);
+            for (int j = 0; j < gets[i]; j++) {
+                cache.get(key);
+            }
+        }
+        path = Files.createTempFile("lfu", ".snapshot");
+        cache.snapshot(path, Serializer.LONG, Serializer.LONG);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public LFUCache<Long, Long> restore() throws IOException {
+        return LFUCache.restore(path, Serializer.LONG, Serializer.LONG);
+    }
+
+    @Benchmark
+    public LFUCache<Long, Long> replay() {
+        LFUCache<Long, Long> replayed = new LFUCache<>(entries);
+        for (int i = 0; i < entries; i++) {
+            long key = i;
+            replayed.put(key, key);
+            for (int j = 0; j < gets[i]; j++) {
+                replayed.get(key);
+            }
+        }
+        return replayed;
+    }
+
+    @Benchmark
+    public Path snapshot() throws IOException {
+        cache.snapshot(path, Serializer.LONG, Serializer.LONG);
+        return path;
+    }
+}
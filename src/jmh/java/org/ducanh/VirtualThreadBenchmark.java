@@ -0,0 +1,121 @@
+package org.ducanh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code tasks} request handlers sharing one cache, each started on its own virtual
+ * thread or queued on a pool of {@value #PLATFORM_THREADS} platform threads. A handler
+ * reads {@code operations} Zipfian keys and puts the ones it misses. The score is the
+ * time until every handler is done.
+ *
+ * <p>Virtual threads need JDK 21; on an older JDK the {@code virtual} runs fail at
+ * setup. The fork traces pinned virtual threads, so a lock taken inside a
+ * {@code synchronized} block or a native frame shows up in the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class VirtualThreadBenchmark {
+    private static final int PLATFORM_THREADS = 256;
+    private static final int SAMPLES = 1 << 16;
+    private static final int MASK = SAMPLES - 1;
+
+    @Param({"virtual", "platform"})
+    public String threads;
+
+    @Param({"100000"})
+    public int tasks;
+
+    @Param({"16"})
+    public int operations;
+
+    @Param({"10000"})
+    public int capacity;
+
+    @Param({"false", "true"})
+    public boolean bufferedReads;
+
+    private ExecutorService executor;
+    private LFUCache<Integer, Integer> cache;
+    private Integer[] keys;
+    private int[] sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = "virtual".equals(threads) ? virtualThreadExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        // Four keys per entry, so handlers miss and insert as well as hit
+        keys = new Integer[capacity * 4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        sequence = KeyDistribution.of("zipfian").sample(keys.length, SAMPLES, 42);
+        cache = LFUCache.<Integer, Integer>builder().capacity(capacity).bufferedReads(bufferedReads).build();
+        for (int i = 0; i < capacity; i++) {
+            cache.put(keys[sequence[i & MASK]], i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        cache.shutdown();
+    }
+
+    @Benchmark
+    public void handlers() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int task = 0; task < tasks; task++) {
+            int start = task * operations;
+            executor.execute(() -> {
+                handle(start);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    private void handle(int start) {
+        for (int i = start; i < start + operations; i++) {
+            Integer key = keys[sequence[i & MASK]];
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, looked up reflectively so the
+     * benchmarks still build for JDK 17.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads need JDK 21, running " + Runtime.version());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.ducanh;
+
+/**
+ * Common operations of the caches in this package, so callers and benchmarks can
+ * switch between a single {@link LFUCache} and a {@link ShardedLFUCache}.
+ */
+public interface Cache<K, V> {
+
+    V get(K key);
+
+    void put(K key, V value);
+
+    void remove(K key);
+
+    boolean containsKey(K key);
+
+    int size();
+
+    int capacity();
+
+    void clear();
+
+    boolean isEmpty();
+
+    void shutdown();
+}
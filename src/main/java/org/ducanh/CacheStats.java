@@ -0,0 +1,118 @@
+package org.ducanh;
+
+/**
+ * Point-in-time statistics of a cache built with {@link LFUCacheBuilder#recordStats()}.
+ * Counters are read one after another without stopping the cache, so a snapshot
+ * taken under load is not an atomic view. Times are in nanoseconds.
+ */
+public final class CacheStats {
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long evictionCount;
+    private final long evictionWeight;
+    private final long lockWaitCount;
+    private final long totalLockWaitTime;
+
+    public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                      long totalLoadTime, long evictionCount, long evictionWeight, long lockWaitCount,
+                      long totalLockWaitTime) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+        this.lockWaitCount = lockWaitCount;
+        this.totalLockWaitTime = totalLockWaitTime;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public double missRate() {
+        long requests = requestCount();
+        return requests == 0 ? 0.0 : (double) missCount / requests;
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Average time spent in a loader, successful or not.
+     */
+    public double averageLoadPenalty() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTime / loads;
+    }
+
+    /**
+     * Entries removed to make room, not counting explicit removals or expirations.
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Total weight of the evicted entries, zero for a cache without a weigher.
+     */
+    public long evictionWeight() {
+        return evictionWeight;
+    }
+
+    /**
+     * Inserts that found the insert lock held and had to wait for it.
+     */
+    public long lockWaitCount() {
+        return lockWaitCount;
+    }
+
+    public long totalLockWaitTime() {
+        return totalLockWaitTime;
+    }
+
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(hitCount + other.hitCount, missCount + other.missCount,
+                loadSuccessCount + other.loadSuccessCount, loadFailureCount + other.loadFailureCount,
+                totalLoadTime + other.totalLoadTime, evictionCount + other.evictionCount,
+                evictionWeight + other.evictionWeight, lockWaitCount + other.lockWaitCount,
+                totalLockWaitTime + other.totalLockWaitTime);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount
+                + ", loadSuccessCount=" + loadSuccessCount + ", loadFailureCount=" + loadFailureCount
+                + ", totalLoadTime=" + totalLoadTime + ", evictionCount=" + evictionCount
+                + ", evictionWeight=" + evictionWeight + ", lockWaitCount=" + lockWaitCount
+                + ", totalLockWaitTime=" + totalLockWaitTime + "}";
+    }
+}
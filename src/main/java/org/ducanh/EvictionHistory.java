@@ -0,0 +1,98 @@
+package org.ducanh;
+
+import java.util.Arrays;
+
+/**
+ * Frequency and age of the most recently evicted entries, from
+ * {@link LFUCache#evictionHistory()}. Many young evictions at frequency one point
+ * at scan pollution; old, frequently used victims point at a cache that is too
+ * small. Ages are in {@link Ticker} nanoseconds since the entry was inserted.
+ */
+public final class EvictionHistory {
+    public static final EvictionHistory EMPTY = new EvictionHistory(new int[0], new long[0], 0);
+
+    private final int[] frequencies;
+    private final long[] ages;
+    private final long totalEvictions;
+
+    EvictionHistory(int[] frequencies, long[] ages, long totalEvictions) {
+        this.frequencies = frequencies;
+        this.ages = ages;
+        this.totalEvictions = totalEvictions;
+    }
+
+    /**
+     * Evictions since the cache was created, including ones no longer in the history.
+     */
+    public long totalEvictions() {
+        return totalEvictions;
+    }
+
+    public int size() {
+        return frequencies.length;
+    }
+
+    /**
+     * Frequency of each recent victim when it was evicted, oldest first.
+     */
+    public int[] frequencies() {
+        return frequencies.clone();
+    }
+
+    /**
+     * Age of each recent victim when it was evicted, oldest first.
+     */
+    public long[] ages() {
+        return ages.clone();
+    }
+
+    public double averageFrequency() {
+        if (frequencies.length == 0) {
+            return 0.0;
+        }
+        double sum = 0;
+        for (int frequency : frequencies) {
+            sum += frequency;
+        }
+        return sum / frequencies.length;
+    }
+
+    public double averageAge() {
+        if (ages.length == 0) {
+            return 0.0;
+        }
+        double sum = 0;
+        for (long age : ages) {
+            sum += age;
+        }
+        return sum / ages.length;
+    }
+
+    /**
+     * Share of recent victims that were evicted without a single hit.
+     */
+    public double unusedRatio() {
+        if (frequencies.length == 0) {
+            return 0.0;
+        }
+        int unused = 0;
+        for (int frequency : frequencies) {
+            if (frequency <= 1) {
+                unused++;
+            }
+        }
+        return (double) unused / frequencies.length;
+    }
+
+    /**
+     * Concatenates two histories, used to combine the segments of a
+     * {@link ShardedLFUCache}; the result is no longer in eviction order.
+     */
+    public EvictionHistory plus(EvictionHistory other) {
+        int[] frequencies = Arrays.copyOf(this.frequencies, size() + other.size());
+        long[] ages = Arrays.copyOf(this.ages, size() + other.size());
+        System.arraycopy(other.frequencies, 0, frequencies, size(), other.size());
+        System.arraycopy(other.ages, 0, ages, size(), other.size());
+        return new EvictionHistory(frequencies, ages, totalEvictions + other.totalEvictions);
+    }
+}
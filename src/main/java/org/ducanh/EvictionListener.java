@@ -0,0 +1,13 @@
+package org.ducanh;
+
+/**
+ * Receives each evicted entry with the frequency it had, while the cache still holds
+ * its lock. Unlike a {@link RemovalListener} it runs before the eviction is visible to
+ * other writers, so a {@link TwoTierCache} can hand the entry to its disk tier without
+ * racing a remove of the same key. It must not block or call back into the cache.
+ */
+@FunctionalInterface
+interface EvictionListener<K, V> {
+
+    void onEviction(K key, V value, int frequency);
+}
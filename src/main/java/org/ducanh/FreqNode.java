@@ -1,39 +1,59 @@
 package org.ducanh;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * FreqNode class represents a node in the frequency/time linked list.
  * Each FreqNode contains nodes with the same access time and maintains
  * doubly linked list pointers to adjacent FreqNodes.
+ * Member nodes are linked intrusively through {@link Node#getPrev()} and
+ * {@link Node#getNext()} in LRU order, so moving a node never allocates.
+ * A FreqNode that becomes empty is unlinked straight away, so frequencies
+ * along the list are increasing but not necessarily consecutive.
  */
 public class FreqNode <K, V> {
     private final ReentrantLock lock = new ReentrantLock();
-    private final int time;
-    private final Set<Node<K, V>> nodes;
+    private volatile int time;
+    private Node<K, V> first;
+    private Node<K, V> last;
+    // Written under the lock, read without it by LFUCache#frequencyHistogram
+    private int size;
     private volatile FreqNode<K, V> next;
     private volatile FreqNode<K, V> prev;
     // 0 is LIVE, 1 is DELETED
     public volatile int state = 0;
+    // Odd while a member's value and deadline are being written, see LFUCache#readOptimistic
+    private volatile int version;
 
 
-    public void executeInLock(Runnable runnable) {
+    public void lock() {
         lock.lock();
-        try {
-            runnable.run();
-        } finally {
-            lock.unlock();
-        }
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Marks the start of a write to a member's value or deadline, as a seqlock does.
+     * Called under the lock, so the plain increment has no competing writer.
+     */
+    @SuppressWarnings("NonAtomicOperationOnVolatileField")
+    public void beginWrite() {
+        version++;
+    }
+
+    @SuppressWarnings("NonAtomicOperationOnVolatileField")
+    public void endWrite() {
+        version++;
     }
 
     public FreqNode(int time, FreqNode<K, V> prev) {
         this.time = time;
-        this.nodes = new LinkedHashSet<>();
         this.next = null;
         this.prev = prev;
     }
@@ -43,36 +63,61 @@ public class FreqNode <K, V> {
         try {
             next = null;
             prev = null;
-            nodes.clear();
+            first = null;
+            last = null;
+            size = 0;
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Returns the FreqNode for {@code time + 1}, linking a new one in if the
+     * successor is missing or, after reclamation, sits at a higher frequency.
+     * The caller holds this node's lock; the successor's lock is taken to update
+     * its back pointer, which keeps locks ordered by ascending frequency.
+     */
     public FreqNode<K, V> getNextFreqNode() {
-        if (next == null) {
-            int prevTime = this.getTime();
-            FreqNode<K, V> newNode = new FreqNode<>(prevTime + 1, this);
-            next = newNode;
-            return newNode;
+        FreqNode<K, V> oldNext = next;
+        if (oldNext != null && oldNext.getTime() == time + 1) {
+            return oldNext;
         }
-        return next;
+        FreqNode<K, V> newNode = new FreqNode<>(time + 1, this);
+        newNode.next = oldNext;
+        if (oldNext != null) {
+            oldNext.lock();
+            try {
+                oldNext.setPrev(newNode);
+            } finally {
+                oldNext.unlock();
+            }
+        }
+        next = newNode;
+        return newNode;
     }
 
     public K getFirstKey() {
-        return nodes.iterator().next().getKey();
+        return first.getKey();
+    }
+
+    public Node<K, V> getFirstNode() {
+        return first;
     }
 
     public boolean isEmpty() {
-        return nodes.isEmpty();
+        return first == null;
+    }
+
+    public int size() {
+        return size;
     }
 
     public int getTime() {
         return time;
     }
 
-    public Set<Node<K, V>> getNodes() {
-        return nodes;
+    public void setTime(int time) {
+        this.time = time;
     }
 
     public FreqNode<K, V> getNext() {
@@ -80,11 +125,33 @@ public class FreqNode <K, V> {
     }
 
     public void addNode(Node<K, V> node) {
-        nodes.add(node);
+        node.setPrev(last);
+        node.setNext(null);
+        if (last == null) {
+            first = node;
+        } else {
+            last.setNext(node);
+        }
+        last = node;
+        size++;
     }
 
-    public void removeNode(Node<?, ?> node) {
-        nodes.remove(node);
+    public void removeNode(Node<K, V> node) {
+        Node<K, V> prevNode = node.getPrev();
+        Node<K, V> nextNode = node.getNext();
+        if (prevNode == null) {
+            first = nextNode;
+        } else {
+            prevNode.setNext(nextNode);
+        }
+        if (nextNode == null) {
+            last = prevNode;
+        } else {
+            nextNode.setPrev(prevNode);
+        }
+        node.setPrev(null);
+        node.setNext(null);
+        size--;
     }
 
     public void setNext(FreqNode<K, V> next) {
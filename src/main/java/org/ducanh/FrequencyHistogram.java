@@ -0,0 +1,109 @@
+package org.ducanh;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Entry counts per frequency, read from the FreqNode list by
+ * {@link LFUCache#frequencyHistogram()}. The list is walked without locks while
+ * entries keep moving, so counts taken under load are approximate.
+ */
+public final class FrequencyHistogram {
+    private final int[] frequencies;
+    private final int[] counts;
+
+    FrequencyHistogram(int[] frequencies, int[] counts) {
+        this.frequencies = frequencies;
+        this.counts = counts;
+    }
+
+    /**
+     * Number of frequency buckets (FreqNodes) in use.
+     */
+    public int freqNodeCount() {
+        return frequencies.length;
+    }
+
+    /**
+     * Frequencies in use, in the order of the FreqNode list.
+     */
+    public int[] frequencies() {
+        return frequencies.clone();
+    }
+
+    /**
+     * Entry count of each frequency in {@link #frequencies()}.
+     */
+    public int[] counts() {
+        return counts.clone();
+    }
+
+    public long entryCount() {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public double meanFrequency() {
+        long entries = entryCount();
+        if (entries == 0) {
+            return 0.0;
+        }
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += (double) frequencies[i] * counts[i];
+        }
+        return sum / entries;
+    }
+
+    /**
+     * Entry counts bucketed by powers of two: index {@code i} counts entries with
+     * a frequency in {@code [2^i, 2^(i+1))}.
+     */
+    public long[] logBuckets() {
+        long[] buckets = new long[32];
+        int used = 0;
+        for (int i = 0; i < frequencies.length; i++) {
+            int bucket = 31 - Integer.numberOfLeadingZeros(Math.max(frequencies[i], 1));
+            buckets[bucket] += counts[i];
+            used = Math.max(used, bucket + 1);
+        }
+        return Arrays.copyOf(buckets, used);
+    }
+
+    /**
+     * Sums the counts of equal frequencies, used to combine the segments of a
+     * {@link ShardedLFUCache}.
+     */
+    public FrequencyHistogram plus(FrequencyHistogram other) {
+        TreeMap<Integer, Integer> merged = new TreeMap<>();
+        for (FrequencyHistogram histogram : new FrequencyHistogram[]{this, other}) {
+            for (int i = 0; i < histogram.frequencies.length; i++) {
+                merged.merge(histogram.frequencies[i], histogram.counts[i], Integer::sum);
+            }
+        }
+        int[] frequencies = new int[merged.size()];
+        int[] counts = new int[merged.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : merged.entrySet()) {
+            frequencies[i] = entry.getKey();
+            counts[i++] = entry.getValue();
+        }
+        return new FrequencyHistogram(frequencies, counts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("FrequencyHistogram{");
+        for (int i = 0; i < frequencies.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(frequencies[i]).append('=').append(counts[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,130 @@
+package org.ducanh;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Count-Min Sketch of 4-bit counters with a doorkeeper Bloom filter in front, used
+ * to estimate how often a key has been seen recently (TinyLFU). A key's first
+ * sighting only sets its doorkeeper bits, so one-hit wonders never reach the
+ * counters. After {@code 10 * capacity} increments every counter is halved and the
+ * doorkeeper is cleared, so estimates follow the recent workload.
+ *
+ * <p>Counters are updated without synchronization. Concurrent increments of the
+ * same word can be lost, which only makes the estimate slightly less accurate.
+ * Additions are counted atomically, so exactly one increment crosses the sample
+ * size and runs the reset; the sketch is never halved twice for one sample.
+ */
+class FrequencySketch<K> {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<FrequencySketch> ADDITIONS =
+            AtomicIntegerFieldUpdater.newUpdater(FrequencySketch.class, "additions");
+
+    private final long[] table;
+    private final long[] doorkeeper;
+    private final int tableMask;
+    private final int doorkeeperMask;
+    private final int sampleSize;
+    private volatile int additions;
+
+    FrequencySketch(int capacity) {
+        int size = ceilingPowerOfTwo(Math.max(capacity, 16));
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        // Sixteen doorkeeper bits per expected entry
+        this.doorkeeper = new long[size / 4];
+        this.doorkeeperMask = doorkeeper.length * 64 - 1;
+        this.sampleSize = 10 * Math.max(capacity, 1);
+    }
+
+    int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency + (doorkeeperContains(hash) ? 1 : 0);
+    }
+
+    void increment(K key) {
+        int hash = spread(key.hashCode());
+        if (doorkeeperPut(hash)) {
+            int start = (hash & 3) << 2;
+            for (int i = 0; i < 4; i++) {
+                incrementAt(indexOf(hash, i), start + i);
+            }
+        }
+        if (ADDITIONS.incrementAndGet(this) == sampleSize) {
+            reset();
+        }
+    }
+
+    private void incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        for (int i = 0; i < doorkeeper.length; i++) {
+            doorkeeper[i] = 0L;
+        }
+        // Increments made during the reset stay counted toward the next sample
+        ADDITIONS.addAndGet(this, -(sampleSize - sampleSize / 2));
+    }
+
+    private boolean doorkeeperContains(int hash) {
+        int first = hash & doorkeeperMask;
+        int second = rehash(hash) & doorkeeperMask;
+        return isSet(first) && isSet(second);
+    }
+
+    /**
+     * Sets the key's doorkeeper bits, returning whether both were already set.
+     */
+    private boolean doorkeeperPut(int hash) {
+        int first = hash & doorkeeperMask;
+        int second = rehash(hash) & doorkeeperMask;
+        boolean present = isSet(first) && isSet(second);
+        doorkeeper[first >>> 6] |= 1L << first;
+        doorkeeper[second >>> 6] |= 1L << second;
+        return present;
+    }
+
+    private boolean isSet(int bit) {
+        return (doorkeeper[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int rehash(int x) {
+        x *= 0x31848bab;
+        x ^= x >>> 14;
+        return x;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
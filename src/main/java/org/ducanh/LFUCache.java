@@ -1,112 +1,409 @@
 package org.ducanh;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 
-public class LFUCache<K, V> {
+public class LFUCache<K, V> implements Cache<K, V> {
     private final int capacity;
     private final ConcurrentHashMap<K, Node<K, V>> map;
     private final FreqNode<K, V> headFreqNode;
     private final ReentrantLock lock = new ReentrantLock();
-    private final Condition notFullCondition = lock.newCondition();
-    private final ExecutorService evictionExecutor = Executors.newSingleThreadExecutor();
+    // Frequency aging, see LFUCacheBuilder#agingPeriod. Cursor and threshold are guarded by lock
+    private static final int AGING_BATCH = 64;
+    private final long agingPeriod;
+    // 0 counts every access, otherwise promotions are sampled, see LFUCacheBuilder#logarithmicFrequency
+    private final int logFactor;
+    private final LongSupplier random;
+    private final LongAdder accesses;
+    private long nextAgingAt;
+    private FreqNode<K, V> agingCursor;
+    private final FrequencySketch<K> sketch;
+    // Expiration. The wheel is created on first use and guarded by lock
+    private static final long MAX_TTL_NANOS = Long.MAX_VALUE >> 2;
+    private final Ticker ticker;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final Predicate<Node<K, V>> expirer = node -> {
+        removeNode(node, null, RemovalCause.EXPIRED);
+        return true;
+    };
+    private TimerWheel<K, V> timerWheel;
+    // Weighted capacity, see LFUCacheBuilder#maximumWeight. weightedSize is null when unweighted
+    private static final int WEIGHTED_SKETCH_SIZE = 1 << 16;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long maximumWeight;
+    private final AtomicLong weightedSize;
+    // Loads in flight, one per key, so concurrent misses share a single loader call
+    private final ConcurrentHashMap<K, Load<V>> loading = new ConcurrentHashMap<>();
+    private final Executor executor;
+    // Buffered reads, see LFUCacheBuilder#bufferedReads. Null when reads promote inline
+    private final ReadBuffer<K, V> readBuffer;
+    private final Consumer<Node<K, V>> readApplier = this::promote;
+    // Statistics, see LFUCacheBuilder#recordStats. Null when disabled
+    private final StatsCounter stats;
+    // Entries copied per FreqNode lock acquisition by snapshot
+    private static final int SNAPSHOT_CHUNK = 1024;
+    // Lock-free reads of a node tried before one waits for its FreqNode's lock
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    // Highest frequency under LFUCacheBuilder#logarithmicFrequency, as with Redis's 8 bit counter
+    static final int MAX_LOG_FREQUENCY = 255;
+    // Keeps (MAX_LOG_FREQUENCY - 1) * factor + 1 within an int
+    static final int MAX_LOG_FACTOR = (Integer.MAX_VALUE - 1) / (MAX_LOG_FREQUENCY - 1);
+    // Removal notifications, see LFUCacheBuilder#removalListener. Queue is null without a listener
+    private final RemovalListener<? super K, ? super V> removalListener;
+    private final ConcurrentLinkedQueue<Notification<K, V>> notifications;
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+    private final Runnable deliveryTask = this::deliverQueued;
+    // Called under lock for every eviction, see EvictionListener. Null when unused
+    private final EvictionListener<? super K, ? super V> evictionListener;
 
     public LFUCache(int capacity) {
-        ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>(capacity);
+        this(LFUCache.<K, V>builder().capacity(capacity));
+    }
+
+    LFUCache(LFUCacheBuilder<K, V> builder) {
+        int capacity = builder.capacity;
+        this.weigher = builder.weigher;
+        if (weigher != null) {
+            if (builder.maximumWeight <= 0) {
+                throw new IllegalArgumentException("Maximum weight must be greater than 0");
+            }
+            capacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+        } else if (builder.maximumWeight > 0) {
+            throw new IllegalArgumentException("Maximum weight requires a weigher");
+        }
         if (capacity <= 0) {
             throw new IllegalArgumentException("Capacity must be greater than 0");
         }
         this.capacity = capacity;
-        this.map = new ConcurrentHashMap<>(capacity);
+        this.maximumWeight = builder.maximumWeight;
+        this.weightedSize = weigher != null ? new AtomicLong() : null;
+        this.map = weigher == null ? new ConcurrentHashMap<>(capacity) : new ConcurrentHashMap<>();
         this.headFreqNode = new FreqNode<>(1, null);
+        this.agingPeriod = builder.agingPeriod;
+        this.logFactor = builder.logFactor;
+        this.random = builder.random;
+        this.accesses = agingPeriod > 0 ? new LongAdder() : null;
+        this.nextAgingAt = agingPeriod;
+        // The entry count of a weighted cache is unknown, so its sketch gets a fixed size
+        this.sketch = !builder.tinyLfuAdmission ? null
+                : new FrequencySketch<>(weigher == null ? capacity : Math.min(capacity, WEIGHTED_SKETCH_SIZE));
+        this.ticker = builder.ticker;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.executor = builder.executor;
+        this.readBuffer = builder.bufferedReads ? new ReadBuffer<>() : null;
+        this.stats = builder.recordStats ? new StatsCounter() : null;
+        this.removalListener = builder.removalListener;
+        this.evictionListener = builder.evictionListener;
+        this.notifications = removalListener != null ? new ConcurrentLinkedQueue<>() : null;
     }
 
+    public static <K, V> LFUCacheBuilder<K, V> builder() {
+        return new LFUCacheBuilder<>();
+    }
+
+    @Override
     public V get(final K key) {
         Objects.requireNonNull(key, "Key cannot be null");
+        recordAccess(key);
+        V value = getPresent(key);
+        if (stats != null) {
+            recordRead(value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached value, or loads it with {@code loader} and caches it. Only
+     * one load per key runs at a time: concurrent callers missing on the same key
+     * wait for that load and get its result, and the load counts as a single
+     * access. A null result is returned but not cached; an exception thrown by the
+     * loader is rethrown to every waiting caller and nothing is cached. A loader
+     * that gets its own key through this method would wait for itself, so it
+     * throws IllegalStateException instead.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        recordAccess(key);
+        V value = getPresent(key);
+        if (stats != null) {
+            recordRead(value);
+        }
+        if (value != null) {
+            return value;
+        }
+        Load<V> future = new Load<>();
+        Load<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            if (inFlight.thread == Thread.currentThread()) {
+                throw new IllegalStateException("Recursive load of key " + key);
+            }
+            return join(inFlight);
+        }
+        load(key, loader, future);
+        return join(future);
+    }
+
+    /**
+     * Like {@link #get(Object, Function)}, but runs the load on the builder's
+     * executor and returns at once. Callers that miss on a key already loading
+     * get a future for the same load.
+     */
+    public CompletableFuture<V> getAsync(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        recordAccess(key);
+        V value = getPresent(key);
+        if (stats != null) {
+            recordRead(value);
+        }
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        Load<V> future = new Load<>();
+        Load<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight.copy();
+        }
+        try {
+            executor.execute(() -> load(key, loader, future));
+        } catch (RejectedExecutionException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future.copy();
+    }
+
+    private V getPresent(K key) {
         Node<K, V> node = map.get(key);
         if (node == null) {
             return null;
         }
+        if (readBuffer != null) {
+            return getBuffered(node);
+        }
+        if (!promotes(node.getFreqNode())) {
+            return readOptimistic(node);
+        }
+
+        FreqNode<K, V> freqNode = lockBucket(node);
+        V value;
+        try {
+            if (!touch(node)) {
+                return null;
+            }
+            advance(freqNode, node);
+            value = node.getValue();
+        } finally {
+            freqNode.unlock();
+        }
+        reclaim(freqNode);
+        return value;
+    }
+
+    /**
+     * Reads the value without any lock and leaves the promotion to the next drain
+     * of the read buffer. The access is dropped if the thread's stripe is full or
+     * contended; a full stripe also triggers a drain if no other thread is running
+     * one.
+     */
+    private V getBuffered(Node<K, V> node) {
+        V value = readOptimistic(node);
+        if (value == null || !promotes(node.getFreqNode())) {
+            return value;
+        }
+        if (readBuffer.offer(node) == ReadBuffer.FULL && lock.tryLock()) {
+            try {
+                readBuffer.drainTo(readApplier);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
 
-        AtomicReference<V> result = new AtomicReference<>();
-        node.executeInLock(() -> {
+    /**
+     * Reads a live node's value without taking its FreqNode's lock, as a StampedLock
+     * optimistic read does. A write that changes a value together with its deadline
+     * makes the FreqNode's version odd while it runs, so a read that overlapped one,
+     * or whose node moved to another FreqNode meanwhile, is retried; after
+     * {@link #OPTIMISTIC_ATTEMPTS} failures the read takes the lock. Returns null if
+     * the node was removed or has expired. Under expireAfterAccess the deadline is
+     * moved by a CAS that loses to any write since it was read.
+     */
+    private V readOptimistic(Node<K, V> node) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            FreqNode<K, V> freqNode = node.getFreqNode();
+            int stamp = freqNode.version();
+            if ((stamp & 1) != 0) {
+                continue;
+            }
             if (node.state == 1) {
-                return;
+                return null;
+            }
+            V value = node.getValue();
+            long expiresAt = node.getExpiresAt();
+            long writeExpiresAt = node.getWriteExpiresAt();
+            if (freqNode.version() != stamp || node.getFreqNode() != freqNode) {
+                continue;
             }
-            FreqNode<K, V> currentNode = node.getFreqNode();
-            currentNode.executeInLock(() -> {
-                FreqNode<K, V> nextFreqNode = currentNode.getNextFreqNode();
-                nextFreqNode.executeInLock(() -> {
-                    currentNode.removeNode(node);
-                    node.setFreqNode(nextFreqNode);
-                    nextFreqNode.getNodes().add(node);
-                });
-            });
-            result.set(node.getValue());
-        });
-        return result.get();
+            if (expiresAt != Node.NEVER) {
+                long now = ticker.read();
+                if (now - expiresAt >= 0) {
+                    return null;
+                }
+                if (expireAfterAccessNanos > 0) {
+                    node.casExpiresAt(expiresAt, Math.min(writeExpiresAt, now + expireAfterAccessNanos));
+                }
+            }
+            return value;
+        }
+        FreqNode<K, V> freqNode = lockBucket(node);
+        try {
+            return touch(node) ? node.getValue() : null;
+        } finally {
+            freqNode.unlock();
+        }
+    }
+
+    /**
+     * Whether an access to an entry of {@code freqNode} moves it to the next
+     * frequency. Always true unless frequencies are logarithmic; then the chance
+     * falls as {@code 1 / ((f - 1) * logFactor + 1)}, so the first hit always
+     * counts, and is 0 at {@link #MAX_LOG_FREQUENCY}. The frequency may be read
+     * without the FreqNode's lock: a stale one only skews the coin.
+     */
+    private boolean promotes(FreqNode<K, V> freqNode) {
+        if (logFactor == 0) {
+            return true;
+        }
+        int frequency = freqNode.getTime();
+        if (frequency >= MAX_LOG_FREQUENCY) {
+            return false;
+        }
+        return Long.remainderUnsigned(random.getAsLong(), (frequency - 1) * logFactor + 1) == 0;
     }
 
+    /**
+     * Returns the live entries among {@code keys}. Each hit counts as an access,
+     * as with {@link #get(Object)}. Values are read without locks, validated
+     * against their FreqNode's version, and hits read from the same FreqNode then
+     * move to the next frequency together, under one acquisition of the two
+     * FreqNode locks instead of one per key.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = new HashMap<>();
+        Map<FreqNode<K, V>, List<Node<K, V>>> batch = new HashMap<>();
+        int hits = 0;
+        for (K key : keys) {
+            Objects.requireNonNull(key, "Key cannot be null");
+            recordAccess(key);
+            Node<K, V> node = map.get(key);
+            if (node == null) {
+                continue;
+            }
+            V value = readOptimistic(node);
+            if (value == null) {
+                continue;
+            }
+            result.put(key, value);
+            if (promotes(node.getFreqNode())) {
+                addTo(batch, node);
+            }
+            hits++;
+        }
+        promoteAll(batch);
+        if (stats != null) {
+            stats.recordHits(hits);
+            stats.recordMisses(keys.size() - hits);
+        }
+        return result;
+    }
+
+    /**
+     * Checks that a node is live and not expired, and extends its deadline under
+     * expireAfterAccess. Callers hold the lock of the node's FreqNode.
+     */
+    private boolean touch(Node<K, V> node) {
+        if (node.state == 1) {
+            return false;
+        }
+        if (node.getExpiresAt() != Node.NEVER) {
+            long now = ticker.read();
+            if (now - node.getExpiresAt() >= 0) {
+                return false;
+            }
+            if (expireAfterAccessNanos > 0) {
+                // The wheel is not touched; it re-checks the deadline when the old one fires
+                node.setExpiresAt(Math.min(node.getWriteExpiresAt(), now + expireAfterAccessNanos));
+            }
+        }
+        return true;
+    }
+
+    @Override
     public void put(K key, V value) {
+        put(key, value, expireAfterWriteNanos, false);
+        deliverNotifications();
+    }
+
+    /**
+     * Inserts or updates the entry so that it expires {@code ttl} after this
+     * write, instead of after the cache-wide expireAfterWrite.
+     */
+    public void put(K key, V value, Duration ttl) {
+        put(key, value, toNanos(ttl), false);
+        deliverNotifications();
+    }
+
+    /**
+     * Inserts or updates the entry. With {@code onlyIfAbsent} a live entry is
+     * left untouched, which is how a load avoids overwriting a concurrent put, and
+     * the access is not recorded again: the get that missed recorded it.
+     */
+    private void put(K key, V value, long ttlNanos, boolean onlyIfAbsent) {
         Objects.requireNonNull(key, "Key cannot be null");
+        int weight = weigh(key, value);
 
         while (true) {
             Node<K, V> node = map.get(key);
             if (node != null) {
-                AtomicInteger latestState = new AtomicInteger(0);
-                node.executeInLock(() -> {
-                    if (node.state == 1) {
-                        latestState.set(1);
-                        return;
-                    }
-                    while (true) {
-                        AtomicBoolean isChangeSuccess = new AtomicBoolean(false);
-                        FreqNode<K, V> currentNode = node.getFreqNode();
-                        currentNode.executeInLock(() -> {
-                            FreqNode<K, V> nextFreqNode = currentNode.getNextFreqNode();
-                            nextFreqNode.executeInLock(() -> {
-                                if (currentNode.state == 1 || nextFreqNode.state == 1) {
-                                    return;
-                                }
-                                currentNode.removeNode(node);
-                                node.setValue(value);
-                                node.setFreqNode(nextFreqNode);
-                                nextFreqNode.addNode(node);
-                                isChangeSuccess.set(true);
-                            });
-                        });
-                        if (isChangeSuccess.get()) {
-                            return;
-                        }
-                    }
-                });
-                if (latestState.get() == 1) {
-                    continue;
+                if (update(node, value, weight, ttlNanos, onlyIfAbsent, null)) {
+                    return;
                 }
-                return;
+                continue;
             }
-            lock.lock();
+            lockForInsert();
             try {
-                while (map.size() >= capacity) {
-                    evictionExecutor.submit(this::evictLRU);
-                    notFullCondition.awaitUninterruptibly();
-                }
-                Node<K, V> refeshedNode = map.get(key);
-                if (refeshedNode == null) {
+                if (map.get(key) == null) {
+                    if (!onlyIfAbsent) {
+                        recordAccess(key);
+                    }
+                    maintain();
                     Node<K, V> newNode = new Node<>(key, value, headFreqNode);
-                    newNode.executeInLock(() -> headFreqNode.executeInLock(() -> {
-                        headFreqNode.addNode(newNode);
-                        map.put(key, newNode);
-                    }));
+                    newNode.setWeight(weight);
+                    insert(newNode, ttlNanos > 0 || expireAfterAccessNanos > 0 ? ticker.read() : 0, ttlNanos, 1);
                     return;
                 }
             } finally {
@@ -115,6 +412,233 @@ public class LFUCache<K, V> {
         }
     }
 
+    /**
+     * Inserts or updates every entry. Updates move to the next frequency in
+     * groups, as in {@link #getAll}. New keys are inserted under a single
+     * acquisition of {@code lock}, and room for those still absent under it is
+     * made in one eviction pass before any is linked, rather than one pass per key.
+     */
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        Map<FreqNode<K, V>, List<Node<K, V>>> batch = new HashMap<>();
+        List<Node<K, V>> inserts = new ArrayList<>();
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            K key = entry.getKey();
+            V value = entry.getValue();
+            Objects.requireNonNull(key, "Key cannot be null");
+            int weight = weigh(key, value);
+            Node<K, V> node = map.get(key);
+            if (node == null || !update(node, value, weight, expireAfterWriteNanos, false, batch)) {
+                Node<K, V> newNode = new Node<>(key, value, headFreqNode);
+                newNode.setWeight(weight);
+                inserts.add(newNode);
+            }
+        }
+        promoteAll(batch);
+        if (!inserts.isEmpty()) {
+            insertAll(inserts);
+        }
+        deliverNotifications();
+    }
+
+    private void insertAll(List<Node<K, V>> nodes) {
+        List<Node<K, V>> raced = null;
+        lockForInsert();
+        try {
+            maintain();
+            // Only keys still absent are inserted, so only they are made room for
+            List<Node<K, V>> absent = new ArrayList<>(nodes.size());
+            long weight = 0;
+            for (Node<K, V> node : nodes) {
+                if (map.get(node.getKey()) != null) {
+                    // Inserted by another thread since the lookup; written as an update below
+                    if (raced == null) {
+                        raced = new ArrayList<>();
+                    }
+                    raced.add(node);
+                    continue;
+                }
+                absent.add(node);
+                weight += weigher == null || node.getWeight() <= maximumWeight ? node.getWeight() : 0;
+            }
+            if (sketch == null) {
+                // With admission each key must be weighed against its own victim instead
+                evict(Math.min(absent.size(), capacity), weight);
+            }
+            long now = expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0 ? ticker.read() : 0;
+            for (Node<K, V> node : absent) {
+                recordAccess(node.getKey());
+                insert(node, now, expireAfterWriteNanos, 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (raced != null) {
+            for (Node<K, V> node : raced) {
+                put(node.getKey(), node.getValue());
+            }
+        }
+    }
+
+    /**
+     * Inserts the entry at {@code frequency} unless the key is present, and returns
+     * whether it was inserted. Used by {@link TwoTierCache} to bring an entry back
+     * from disk with the frequency it was evicted at, instead of starting it over at
+     * the head where the next eviction would take it again.
+     */
+    boolean putIfAbsent(K key, V value, int frequency) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        int weight = weigh(key, value);
+        boolean inserted = false;
+        lockForInsert();
+        try {
+            if (map.get(key) == null) {
+                recordAccess(key);
+                maintain();
+                Node<K, V> newNode = new Node<>(key, value, headFreqNode);
+                newNode.setWeight(weight);
+                inserted = insert(newNode, expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0 ? ticker.read() : 0,
+                        expireAfterWriteNanos, frequency);
+            }
+        } finally {
+            lock.unlock();
+        }
+        deliverNotifications();
+        return inserted;
+    }
+
+    /**
+     * Links a new node into the FreqNode for {@code frequency}, normally 1, and
+     * the map, evicting first if there is no room. The node is dropped, and false
+     * returned, if it is heavier than the maximum weight or the admission filter
+     * rejects it. Called under {@code lock} once the key is known to be absent.
+     */
+    private boolean insert(Node<K, V> newNode, long now, long ttlNanos, int frequency) {
+        if (sketch != null && !hasRoom(1, newNode.getWeight()) && !admit(newNode.getKey())) {
+            return false;
+        }
+        return link(newNode, now, ttlNanos, frequency, headFreqNode) != null;
+    }
+
+    /**
+     * The part of {@link #insert} after admission, shared with restore: evicts
+     * until the node fits and links it into the map and the FreqNode for
+     * {@code frequency}, searched for from {@code from}, which must not be past
+     * it. Returns that FreqNode, or null if the node is heavier than the maximum
+     * weight and was dropped. Called under {@code lock}.
+     */
+    private FreqNode<K, V> link(Node<K, V> newNode, long now, long ttlNanos, int frequency, FreqNode<K, V> from) {
+        int weight = newNode.getWeight();
+        if (!hasRoom(1, weight)) {
+            if (weigher != null && weight > maximumWeight) {
+                // Could never fit, so nothing is evicted for it
+                return null;
+            }
+            evict(1, weight);
+        }
+        if (weightedSize != null) {
+            weightedSize.addAndGet(weight);
+        }
+        if (stats != null) {
+            newNode.setInsertedAt(ticker.read());
+        }
+        setExpiry(newNode, now, ttlNanos);
+        FreqNode<K, V> freqNode;
+        if (logFactor > 0) {
+            frequency = Math.min(frequency, MAX_LOG_FREQUENCY);
+        }
+        if (frequency > 1) {
+            freqNode = lockFreqNode(from, frequency);
+        } else {
+            freqNode = headFreqNode;
+            freqNode.lock();
+        }
+        try {
+            newNode.setFreqNode(freqNode);
+            freqNode.addNode(newNode);
+            map.put(newNode.getKey(), newNode);
+        } finally {
+            freqNode.unlock();
+        }
+        if (newNode.getExpiresAt() != Node.NEVER) {
+            timerWheel().schedule(newNode);
+        }
+        return freqNode;
+    }
+
+    /**
+     * Writes a value into an existing node. Returns false if the node was removed
+     * or had expired, in which case the caller looks the key up again. The node
+     * moves to the next frequency here, or is added to {@code batch} for the
+     * caller's {@link #promoteAll} when a batch is given.
+     */
+    private boolean update(Node<K, V> node, V value, int weight, long ttlNanos, boolean onlyIfAbsent,
+                           Map<FreqNode<K, V>, List<Node<K, V>>> batch) {
+        boolean expired = false;
+        int weightDelta = 0;
+        long previousExpiresAt;
+        boolean promoted = false;
+        FreqNode<K, V> freqNode = lockBucket(node);
+        try {
+            if (node.state == 1) {
+                return false;
+            }
+            if (onlyIfAbsent && (node.getExpiresAt() == Node.NEVER || ticker.read() - node.getExpiresAt() < 0)) {
+                return true;
+            }
+            long now = ttlNanos > 0 || expireAfterAccessNanos > 0 || node.getExpiresAt() != Node.NEVER
+                    ? ticker.read() : 0;
+            previousExpiresAt = node.getExpiresAt();
+            if (previousExpiresAt != Node.NEVER && now - previousExpiresAt >= 0) {
+                expired = true;
+            } else {
+                V oldValue = node.getValue();
+                freqNode.beginWrite();
+                node.setValue(value);
+                if (weightedSize != null) {
+                    weightDelta = weight - node.getWeight();
+                    node.setWeight(weight);
+                    weightedSize.addAndGet(weightDelta);
+                }
+                setExpiry(node, now, ttlNanos);
+                freqNode.endWrite();
+                if (notifications != null && oldValue != value) {
+                    notifications.add(new Notification<>(node.getKey(), oldValue, RemovalCause.REPLACED));
+                }
+                if (!onlyIfAbsent) {
+                    recordAccess(node.getKey());
+                }
+                if (promotes(freqNode)) {
+                    if (batch == null) {
+                        advance(freqNode, node);
+                        promoted = true;
+                    } else {
+                        addTo(batch, node);
+                    }
+                }
+            }
+        } finally {
+            freqNode.unlock();
+        }
+        if (promoted) {
+            reclaim(freqNode);
+        }
+        if (expired) {
+            // An expired entry is replaced by a fresh one rather than updated
+            expire(node);
+            return false;
+        }
+        long expiresAt = node.getExpiresAt();
+        if (expiresAt < previousExpiresAt || (expiresAt == Node.NEVER && previousExpiresAt != Node.NEVER)) {
+            // Later deadlines are picked up when the wheel fires; earlier or cleared ones must move
+            reschedule(node);
+        }
+        if (weightDelta > 0) {
+            evictOverweight();
+        }
+        return true;
+    }
+
+    @Override
     public void remove(K key) {
         Objects.requireNonNull(key, "Key cannot be null");
         lock.lock();
@@ -123,104 +647,998 @@ public class LFUCache<K, V> {
             if (node == null || node.state == 1) {
                 return;
             }
-            node.executeInLock(() -> {
-                if (node.state == 1) {
-                    return;
+            removeNode(node, null, RemovalCause.EXPLICIT);
+        } finally {
+            lock.unlock();
+        }
+        deliverNotifications();
+    }
+
+    /**
+     * Removes every key under one acquisition of {@code lock}, unlinking the
+     * entries of each FreqNode together.
+     */
+    public void removeAll(Collection<? extends K> keys) {
+        Map<FreqNode<K, V>, List<Node<K, V>>> batch = new HashMap<>();
+        lock.lock();
+        try {
+            for (K key : keys) {
+                Objects.requireNonNull(key, "Key cannot be null");
+                Node<K, V> node = map.get(key);
+                if (node != null && node.state == 0) {
+                    addTo(batch, node);
                 }
-                FreqNode<K, V> currentNode = node.getFreqNode();
-                currentNode.executeInLock(() -> {
-                    currentNode.removeNode(node);
-                    map.remove(key);
-                    node.state = 1;
-                });
-            });
-            notFullCondition.signal();
+            }
+            for (Map.Entry<FreqNode<K, V>, List<Node<K, V>>> group : batch.entrySet()) {
+                removeGroup(group.getKey(), group.getValue());
+            }
         } finally {
             lock.unlock();
         }
+        deliverNotifications();
     }
 
+    /**
+     * Evicts least frequently used entries until there is room for one more.
+     * Runs on the calling thread under {@code lock}, so an insert into a full
+     * cache never waits for another thread to make room.
+     */
     public void evictLRU() {
-        for (FreqNode<K, V> freqNode = headFreqNode; freqNode != null;) {
-            for (Node<K, V> node : freqNode.getNodes()) {
-                remove(node.getKey());
-                if (map.size() < capacity) {
-                    return;
+        lock.lock();
+        try {
+            evict(1, 0);
+        } finally {
+            lock.unlock();
+        }
+        deliverNotifications();
+    }
+
+    /**
+     * Runs the loader for a key this thread registered in {@code loading}, caches
+     * a non-null result and completes the future. The key is unregistered only
+     * after the value is in the map, so a caller arriving later either joins the
+     * future or hits the cache. The map is checked again first, in case a load
+     * finished between this thread's miss and its registration; that check does
+     * not promote, since the miss already counted as the access.
+     */
+    private void load(K key, Function<? super K, ? extends V> loader, Load<V> future) {
+        future.thread = Thread.currentThread();
+        try {
+            Node<K, V> node = map.get(key);
+            V value = node == null ? null : readOptimistic(node);
+            if (value == null) {
+                value = stats == null ? loader.apply(key) : timedLoad(key, loader);
+                if (value != null) {
+                    put(key, value, expireAfterWriteNanos, true);
                 }
             }
-            freqNode = freqNode.getNext();
+            future.complete(value);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        } finally {
+            loading.remove(key, future);
         }
+        deliverNotifications();
     }
 
-    public void cleanEmptyFreqNode() {
-        FreqNode<K, V> current = headFreqNode.getNext();
-        FreqNode<K, V> lastNode = headFreqNode;
+    private V timedLoad(K key, Function<? super K, ? extends V> loader) {
+        long start = System.nanoTime();
+        try {
+            V value = loader.apply(key);
+            stats.recordLoadSuccess(System.nanoTime() - start);
+            return value;
+        } catch (RuntimeException | Error e) {
+            stats.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+    }
 
-        while (current != null) {
-            FreqNode<K, V> prev = current.getPrev();
-            FreqNode<K, V> next = current.getNext();
-            lastNode = current;
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
 
-            if (prev != null && next != null) {
-                cleanMiddleNode(prev, current, next);
+    /**
+     * Evicts until the given number of entries of the given total weight fit.
+     * Called under {@code lock}; each eviction is O(1), so an insert pays for as
+     * many entries as it displaces.
+     */
+    private void evict(int entries, long weight) {
+        while (!hasRoom(entries, weight) && evictOne()) {
+            // keep evicting
+        }
+    }
+
+    /**
+     * Evicts after an update made an entry heavier and pushed the total over the
+     * maximum weight. The updated entry itself may be the one evicted.
+     */
+    private void evictOverweight() {
+        lock.lock();
+        try {
+            while (weightedSize.get() > maximumWeight && evictOne()) {
+                // keep evicting
             }
-            current = next;
+        } finally {
+            lock.unlock();
         }
+    }
+
+    private boolean hasRoom(int entries, long weight) {
+        return (long) map.size() + entries <= capacity
+                && (weightedSize == null || weightedSize.get() + weight <= maximumWeight);
+    }
 
-        cleanLastNode(lastNode);
+    private int weigh(K key, V value) {
+        if (weigher == null) {
+            return 0;
+        }
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight cannot be negative");
+        }
+        return weight;
     }
 
+    /**
+     * Unlinks every empty FreqNode. Empty nodes are normally reclaimed as soon as
+     * their last entry moves out or is removed, so this only finds stragglers.
+     */
+    public void cleanEmptyFreqNode() {
+        for (FreqNode<K, V> current = headFreqNode.getNext(); current != null; current = current.getNext()) {
+            reclaim(current);
+        }
+    }
+
+    @Override
     public boolean containsKey(K key) {
-        return map.containsKey(key);
+        Node<K, V> node = map.get(key);
+        return node != null && (node.getExpiresAt() == Node.NEVER || ticker.read() - node.getExpiresAt() < 0);
     }
 
+    /**
+     * Applies buffered reads and removes every entry whose deadline has passed.
+     * Inserts do this before considering eviction; call it to release expired
+     * entries sooner.
+     */
+    public void cleanUp() {
+        lock.lock();
+        try {
+            if (readBuffer != null) {
+                readBuffer.drainTo(readApplier);
+            }
+            expireEntries();
+        } finally {
+            lock.unlock();
+        }
+        deliverNotifications();
+    }
+
+    @Override
     public int size() {
         return map.size();
     }
 
+    @Override
     public int capacity() {
         return capacity;
     }
 
+    /**
+     * Returns a snapshot of the statistics, or {@link CacheStats#EMPTY} when the
+     * cache was built without {@link LFUCacheBuilder#recordStats()}.
+     */
+    public CacheStats stats() {
+        return stats == null ? CacheStats.EMPTY : stats.snapshot();
+    }
+
+    /**
+     * Walks the FreqNode list and counts the entries at each frequency. The walk
+     * follows volatile links and reads each FreqNode's size without its lock, so
+     * gets and puts are never blocked; under concurrent updates the counts are a
+     * close approximation rather than an exact snapshot. Sizes are read from the
+     * highest frequency down, against the direction promotions move entries, so
+     * an entry promoted during the walk may be missed but is not counted twice.
+     */
+    public FrequencyHistogram frequencyHistogram() {
+        FreqNode<K, V> last = headFreqNode;
+        for (FreqNode<K, V> next = last.getNext(); next != null; next = next.getNext()) {
+            last = next;
+        }
+        int[] frequencies = new int[16];
+        int[] counts = new int[16];
+        int used = 0;
+        // A reclaimed FreqNode keeps its prev link, so the walk still reaches the head
+        for (FreqNode<K, V> current = last; current != null; current = current.getPrev()) {
+            int size = current.size();
+            if (current.state == 1 || size <= 0) {
+                continue;
+            }
+            if (used == frequencies.length) {
+                frequencies = Arrays.copyOf(frequencies, used * 2);
+                counts = Arrays.copyOf(counts, used * 2);
+            }
+            frequencies[used] = current.getTime();
+            counts[used++] = size;
+        }
+        int[] ascendingFrequencies = new int[used];
+        int[] ascendingCounts = new int[used];
+        for (int i = 0; i < used; i++) {
+            ascendingFrequencies[i] = frequencies[used - 1 - i];
+            ascendingCounts[i] = counts[used - 1 - i];
+        }
+        return new FrequencyHistogram(ascendingFrequencies, ascendingCounts);
+    }
+
+    /**
+     * Returns the frequency and age of the last 1024 evicted entries, or
+     * {@link EvictionHistory#EMPTY} when the cache does not record statistics.
+     */
+    public EvictionHistory evictionHistory() {
+        return stats == null ? EvictionHistory.EMPTY : stats.evictionHistory();
+    }
+
+    /**
+     * Total weight of the entries, or their number when the cache has no weigher.
+     */
+    public long weightedSize() {
+        return weightedSize == null ? map.size() : weightedSize.get();
+    }
+
+    /**
+     * Writes the live entries and their frequencies to {@code path}, to be read back
+     * by {@link #restore}. Traffic is not stopped: the FreqNode list is walked from
+     * the head, and each FreqNode's entries are copied under its lock at most
+     * {@link #SNAPSHOT_CHUNK} at a time and serialized once the lock is released. The
+     * snapshot is therefore not atomic. An entry promoted while its FreqNode is being
+     * written can appear twice, and restore keeps the later, more frequent copy.
+     * The rest of a FreqNode is skipped if the last copied entry left it between two
+     * chunks. The file is written beside {@code path} and moved over it when
+     * complete, so a failed snapshot leaves the previous one in place, and the
+     * partial file is deleted.
+     */
+    public void snapshot(Path path, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        Path partial = path.resolveSibling(path.getFileName() + ".partial");
+        try {
+            writeSnapshot(partial, keySerializer, valueSerializer);
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException | Error e) {
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private void writeSnapshot(Path partial, Serializer<K> keySerializer, Serializer<V> valueSerializer)
+            throws IOException {
+        @SuppressWarnings("unchecked")
+        K[] keys = (K[]) new Object[SNAPSHOT_CHUNK];
+        @SuppressWarnings("unchecked")
+        V[] values = (V[]) new Object[SNAPSHOT_CHUNK];
+        long now = ticker.read();
+        try (SnapshotWriter writer = new SnapshotWriter(partial, weigher == null ? capacity : 0)) {
+            for (FreqNode<K, V> freqNode = headFreqNode; freqNode != null; freqNode = freqNode.getNext()) {
+                Node<K, V> cursor = null;
+                boolean more = true;
+                while (more) {
+                    int time;
+                    int count = 0;
+                    freqNode.lock();
+                    try {
+                        if (freqNode.state == 1 || (cursor != null && (cursor.state == 1 || cursor.getFreqNode() != freqNode))) {
+                            break;
+                        }
+                        time = freqNode.getTime();
+                        Node<K, V> node = cursor == null ? freqNode.getFirstNode() : cursor.getNext();
+                        for (; node != null && count < SNAPSHOT_CHUNK; node = node.getNext()) {
+                            cursor = node;
+                            if (node.getExpiresAt() == Node.NEVER || now - node.getExpiresAt() < 0) {
+                                keys[count] = node.getKey();
+                                values[count++] = node.getValue();
+                            }
+                        }
+                        more = node != null;
+                    } finally {
+                        freqNode.unlock();
+                    }
+                    if (count > 0) {
+                        writer.writeBucket(time, count);
+                        for (int i = 0; i < count; i++) {
+                            writer.write(keys[i], keySerializer);
+                            writer.write(values[i], valueSerializer);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #snapshot} into a new cache with the
+     * snapshot's capacity and default settings. A weighted cache must be restored
+     * through {@link #restore(Path, LFUCacheBuilder, Serializer, Serializer)}, which
+     * supplies its weigher.
+     */
+    public static <K, V> LFUCache<K, V> restore(Path path, Serializer<K> keySerializer, Serializer<V> valueSerializer)
+            throws IOException {
+        return restore(path, null, keySerializer, valueSerializer);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #snapshot} into a cache built from
+     * {@code builder}, or with the snapshot's capacity when it is null. Entries keep
+     * their frequencies and their LRU order within each frequency: the FreqNode list
+     * is rebuilt directly, one FreqNode per frequency, rather than by replaying puts
+     * and gets. When the cache is smaller than the snapshot, the least frequent
+     * entries are evicted as the more frequent ones are read. Restored entries are
+     * given fresh expiry deadlines.
+     */
+    public static <K, V> LFUCache<K, V> restore(Path path, LFUCacheBuilder<K, V> builder,
+                                                Serializer<K> keySerializer, Serializer<V> valueSerializer)
+            throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path)) {
+            if (builder == null) {
+                if (reader.capacity() == 0) {
+                    throw new IllegalArgumentException("A snapshot of a weighted cache is restored with a builder");
+                }
+                builder = LFUCache.<K, V>builder().capacity(reader.capacity());
+            }
+            LFUCache<K, V> cache = builder.build();
+            cache.restoreEntries(reader, keySerializer, valueSerializer);
+            return cache;
+        }
+    }
+
+    private void restoreEntries(SnapshotReader reader, Serializer<K> keySerializer, Serializer<V> valueSerializer)
+            throws IOException {
+        long now = ticker.read();
+        long entries = 0;
+        FreqNode<K, V> tail = headFreqNode;
+        lock.lock();
+        try {
+            for (int time = reader.readInt(); time != 0; time = reader.readInt()) {
+                int count = reader.readInt();
+                entries += count;
+                for (int i = 0; i < count; i++) {
+                    K key = reader.read(keySerializer);
+                    V value = reader.read(valueSerializer);
+                    Node<K, V> duplicate = map.get(key);
+                    if (duplicate != null) {
+                        removeNode(duplicate, null, RemovalCause.REPLACED);
+                    }
+                    Node<K, V> node = new Node<>(key, value, headFreqNode);
+                    node.setWeight(weigh(key, value));
+                    // Buckets are mostly ascending, so the walk starts at the last one. Aging
+                    // during the snapshot can lower a later bucket, and that one starts over
+                    FreqNode<K, V> from = tail.getTime() <= time ? tail : headFreqNode;
+                    FreqNode<K, V> linked = link(node, now, expireAfterWriteNanos, time, from);
+                    if (linked != null) {
+                        tail = linked;
+                    }
+                }
+            }
+            if (reader.readLong() != entries) {
+                throw new IOException("Corrupt snapshot: entry count does not match");
+            }
+        } finally {
+            lock.unlock();
+        }
+        deliverNotifications();
+    }
+
+    @Override
     public void clear() {
         lock.lock();
         try {
-            map.clear();
-            headFreqNode.clear();
+            // Remove entry by entry so a concurrent get on a cleared node sees it
+            // deleted, instead of promoting it inside a detached frequency list
+            for (Node<K, V> node : map.values()) {
+                removeNode(node, null, RemovalCause.EXPLICIT);
+            }
+            agingCursor = null;
         } finally {
             lock.unlock();
         }
+        deliverNotifications();
     }
 
+    /**
+     * Eviction runs inline on the inserting thread, so there is nothing to stop.
+     * Kept so callers written against the executor-based eviction still compile.
+     */
+    @Override
     public void shutdown() {
-        evictionExecutor.shutdownNow();
     }
 
+    @Override
     public boolean isEmpty() {
         return map.isEmpty();
     }
 
 
 
-    private void cleanMiddleNode(FreqNode<K, V> prev, FreqNode<K, V> current, FreqNode<K, V> next) {
-        prev.executeInLock(() -> current.executeInLock(() -> next.executeInLock(() -> {
-            if (current.isEmpty() && current.state == 0) {
-                current.state = 1;
-                prev.setNext(next);
-                next.setPrev(prev);
+    /**
+     * Locks the FreqNode the node sits in and returns it. Entries have no lock of
+     * their own: the FreqNode lock guards the value, weight and deadlines of its
+     * nodes along with their membership, so a node cannot move, be updated or be
+     * removed while it is held. Promotion and aging move nodes under FreqNode
+     * locks, so the node's FreqNode is re-read once locked. The locks are taken
+     * explicitly rather than through a lambda so that a cache hit does not
+     * allocate.
+     */
+    private FreqNode<K, V> lockBucket(Node<K, V> node) {
+        while (true) {
+            FreqNode<K, V> freqNode = node.getFreqNode();
+            freqNode.lock();
+            if (node.getFreqNode() == freqNode) {
+                return freqNode;
+            }
+            freqNode.unlock();
+        }
+    }
+
+    /**
+     * Returns the FreqNode labelled {@code frequency}, locked, linking a new one in
+     * after the highest FreqNode below that frequency if there is none. The walk
+     * starts at {@code from} unless it was reclaimed, and starts over if the list
+     * changed before the predecessor was locked. Called under {@code lock}, so aging
+     * does not relabel FreqNodes during the walk. Frequencies below the head's
+     * return the head.
+     */
+    private FreqNode<K, V> lockFreqNode(FreqNode<K, V> from, int frequency) {
+        FreqNode<K, V> prev = from;
+        while (true) {
+            if (prev.state == 1) {
+                prev = headFreqNode;
+            }
+            for (FreqNode<K, V> next = prev.getNext(); next != null && next.getTime() <= frequency;
+                 next = next.getNext()) {
+                prev = next;
+            }
+            prev.lock();
+            FreqNode<K, V> next = prev.getNext();
+            if (prev.state == 1 || next != null && next.getTime() <= frequency) {
+                prev.unlock();
+                continue;
+            }
+            if (prev.getTime() >= frequency) {
+                return prev;
+            }
+            // Locked before it is published, so nothing else can be waiting for it
+            FreqNode<K, V> created = new FreqNode<>(frequency, prev);
+            created.setNext(next);
+            created.lock();
+            if (next != null) {
+                next.lock();
+                try {
+                    next.setPrev(created);
+                } finally {
+                    next.unlock();
+                }
+            }
+            prev.setNext(created);
+            prev.unlock();
+            return created;
+        }
+    }
+
+    /**
+     * Moves the node to the next frequency. Callers hold the lock of
+     * {@code freqNode}, the node's FreqNode, and reclaim it once they release
+     * the lock. A non-empty FreqNode cannot be reclaimed, and its successor
+     * cannot be reclaimed or relabelled while its lock is held.
+     */
+    private void advance(FreqNode<K, V> freqNode, Node<K, V> node) {
+        FreqNode<K, V> nextFreqNode = freqNode.getNextFreqNode();
+        nextFreqNode.lock();
+        try {
+            freqNode.removeNode(node);
+            node.setFreqNode(nextFreqNode);
+            nextFreqNode.addNode(node);
+        } finally {
+            nextFreqNode.unlock();
+        }
+    }
+
+    /**
+     * Moves the node to the next frequency unless it was removed. Also applies
+     * the reads drained from the read buffer.
+     */
+    private void promote(Node<K, V> node) {
+        FreqNode<K, V> freqNode = lockBucket(node);
+        try {
+            if (node.state == 1) {
+                return;
+            }
+            advance(freqNode, node);
+        } finally {
+            freqNode.unlock();
+        }
+        reclaim(freqNode);
+    }
+
+    /**
+     * Removes the least recently used entry of the lowest frequency. The victim
+     * is read under its FreqNode's lock and only removed if it is still in that
+     * FreqNode once that lock is held again; if a get promoted it in between, the
+     * choice is made again instead of evicting a more frequent entry.
+     */
+    private boolean evictOne() {
+        FreqNode<K, V> freqNode = lowestFreqNode();
+        while (freqNode != null) {
+            Node<K, V> victim = firstNode(freqNode);
+            if (victim == null) {
+                // Emptied but not reclaimed yet
+                freqNode = freqNode.getNext();
+                continue;
+            }
+            if (removeNode(victim, freqNode, RemovalCause.EVICTED)) {
+                if (evictionListener != null) {
+                    evictionListener.onEviction(victim.getKey(), victim.getValue(), freqNode.getTime());
+                }
+                if (stats != null) {
+                    stats.recordEviction(victim.getWeight(), freqNode.getTime(), ticker.read() - victim.getInsertedAt());
+                }
+                return true;
+            }
+            freqNode = lowestFreqNode();
+        }
+        return false;
+    }
+
+    /**
+     * Empty FreqNodes are reclaimed as soon as they empty, and the head is the
+     * only one kept while empty, so the lowest non-empty frequency is the head
+     * or the node right after it. Eviction therefore never walks the list.
+     */
+    private FreqNode<K, V> lowestFreqNode() {
+        return headFreqNode.isEmpty() ? headFreqNode.getNext() : headFreqNode;
+    }
+
+    private Node<K, V> firstNode(FreqNode<K, V> freqNode) {
+        freqNode.lock();
+        try {
+            return freqNode.getFirstNode();
+        } finally {
+            freqNode.unlock();
+        }
+    }
+
+    /**
+     * Removes the node from its FreqNode, the map and the timer wheel. When
+     * {@code expected} is not null the node is only removed if it still sits in
+     * that FreqNode. Callers hold {@code lock}.
+     */
+    private boolean removeNode(Node<K, V> node, FreqNode<K, V> expected, RemovalCause cause) {
+        if (expected != null && node.getFreqNode() != expected) {
+            return false;
+        }
+        FreqNode<K, V> freqNode = lockBucket(node);
+        try {
+            if (node.state == 1 || (expected != null && freqNode != expected)) {
+                return false;
+            }
+            unlinkEntry(freqNode, node, cause);
+        } finally {
+            freqNode.unlock();
+        }
+        reclaim(freqNode);
+        return true;
+    }
+
+    /**
+     * Removes a group of nodes read from one FreqNode, taking its lock once.
+     * Nodes that moved to another FreqNode in the meantime are removed one by
+     * one.
+     */
+    private void removeGroup(FreqNode<K, V> freqNode, List<Node<K, V>> nodes) {
+        List<Node<K, V>> moved = null;
+        freqNode.lock();
+        try {
+            for (Node<K, V> node : nodes) {
+                if (node.state == 1) {
+                    continue;
+                }
+                if (node.getFreqNode() != freqNode) {
+                    if (moved == null) {
+                        moved = new ArrayList<>();
+                    }
+                    moved.add(node);
+                    continue;
+                }
+                unlinkEntry(freqNode, node, RemovalCause.EXPLICIT);
+            }
+        } finally {
+            freqNode.unlock();
+        }
+        reclaim(freqNode);
+        if (moved != null) {
+            for (Node<K, V> node : moved) {
+                removeNode(node, null, RemovalCause.EXPLICIT);
+            }
+        }
+    }
+
+    /**
+     * Removes the node from its FreqNode, the map and the timer wheel. Callers
+     * hold {@code lock} and the FreqNode lock.
+     */
+    private void unlinkEntry(FreqNode<K, V> freqNode, Node<K, V> node, RemovalCause cause) {
+        freqNode.removeNode(node);
+        map.remove(node.getKey(), node);
+        node.state = 1;
+        if (notifications != null) {
+            notifications.add(new Notification<>(node.getKey(), node.getValue(), cause));
+        }
+        if (weightedSize != null) {
+            weightedSize.addAndGet(-node.getWeight());
+        }
+        if (timerWheel != null) {
+            timerWheel.deschedule(node);
+        }
+    }
+
+    /**
+     * Moves each group of nodes from the FreqNode they were read in to the next
+     * frequency, taking the two FreqNode locks once per group. Nodes that moved
+     * in the meantime are promoted one by one; removed ones are skipped.
+     */
+    private void promoteAll(Map<FreqNode<K, V>, List<Node<K, V>>> batch) {
+        for (Map.Entry<FreqNode<K, V>, List<Node<K, V>>> group : batch.entrySet()) {
+            FreqNode<K, V> freqNode = group.getKey();
+            List<Node<K, V>> moved = null;
+            freqNode.lock();
+            try {
+                if (freqNode.state == 1) {
+                    moved = group.getValue();
+                } else {
+                    // Created on the first node still here, so a group that all moved links no empty FreqNode
+                    FreqNode<K, V> nextFreqNode = null;
+                    try {
+                        for (Node<K, V> node : group.getValue()) {
+                            if (node.state == 1) {
+                                continue;
+                            }
+                            if (node.getFreqNode() != freqNode) {
+                                if (moved == null) {
+                                    moved = new ArrayList<>();
+                                }
+                                moved.add(node);
+                                continue;
+                            }
+                            if (nextFreqNode == null) {
+                                nextFreqNode = freqNode.getNextFreqNode();
+                                nextFreqNode.lock();
+                            }
+                            freqNode.removeNode(node);
+                            node.setFreqNode(nextFreqNode);
+                            nextFreqNode.addNode(node);
+                        }
+                    } finally {
+                        if (nextFreqNode != null) {
+                            nextFreqNode.unlock();
+                        }
+                    }
+                }
+            } finally {
+                freqNode.unlock();
+            }
+            reclaim(freqNode);
+            if (moved != null) {
+                for (Node<K, V> node : moved) {
+                    promote(node);
+                }
+            }
+        }
+    }
+
+    private static <K, V> void addTo(Map<FreqNode<K, V>, List<Node<K, V>>> batch, Node<K, V> node) {
+        batch.computeIfAbsent(node.getFreqNode(), freqNode -> new ArrayList<>()).add(node);
+    }
+
+    /**
+     * Unlinks the FreqNode if it is empty, so the list only holds frequencies
+     * that are in use. Locks prev, the node and next in list order; if prev
+     * changed before its lock was acquired, the read is retried.
+     */
+    private void reclaim(FreqNode<K, V> freqNode) {
+        while (freqNode != headFreqNode && freqNode.state == 0 && freqNode.isEmpty()) {
+            FreqNode<K, V> prev = freqNode.getPrev();
+            prev.lock();
+            try {
+                freqNode.lock();
+                try {
+                    if (freqNode.state == 1 || !freqNode.isEmpty()) {
+                        return;
+                    }
+                    if (prev.state == 1 || freqNode.getPrev() != prev) {
+                        continue;
+                    }
+                    unlink(prev, freqNode);
+                    return;
+                } finally {
+                    freqNode.unlock();
+                }
+            } finally {
+                prev.unlock();
+            }
+        }
+    }
+
+    private void unlink(FreqNode<K, V> prev, FreqNode<K, V> freqNode) {
+        FreqNode<K, V> next = freqNode.getNext();
+        if (next == null) {
+            freqNode.state = 1;
+            prev.setNext(null);
+            return;
+        }
+        next.lock();
+        try {
+            freqNode.state = 1;
+            prev.setNext(next);
+            next.setPrev(prev);
+        } finally {
+            next.unlock();
+        }
+    }
+
+    private void recordAccess(K key) {
+        if (accesses != null) {
+            accesses.increment();
+        }
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+    }
+
+    /**
+     * TinyLFU admission: a new key only replaces the entry eviction would pick
+     * if the sketch has seen it more often recently.
+     */
+    private boolean admit(K key) {
+        FreqNode<K, V> freqNode = lowestFreqNode();
+        Node<K, V> victim = freqNode == null ? null : firstNode(freqNode);
+        return victim == null || sketch.frequency(key) > sketch.frequency(victim.getKey());
+    }
+
+    /**
+     * Advances frequency aging by at most {@link #AGING_BATCH} entries. Called
+     * under {@code lock} on inserts, which are the only operations that act on
+     * frequencies through eviction. A pass walks the list upwards from the node
+     * after the head; each FreqNode is relabelled from {@code t} to
+     * {@code (t + 1) / 2}, or merged into its predecessor when that one already
+     * sits at or above the halved value. Processed nodes end up at or below half
+     * of every node still ahead of the cursor, so the list stays ordered while
+     * the pass is incomplete.
+     */
+    private void ageFrequencies() {
+        if (agingCursor == null) {
+            if (accesses.sum() < nextAgingAt) {
+                return;
+            }
+            nextAgingAt = accesses.sum() + agingPeriod;
+            agingCursor = headFreqNode.getNext();
+        }
+        int budget = AGING_BATCH;
+        while (agingCursor != null && budget > 0) {
+            FreqNode<K, V> freqNode = agingCursor;
+            if (freqNode.state == 1) {
+                agingCursor = freqNode.getNext();
+                continue;
             }
-        })));
+            FreqNode<K, V> prev = freqNode.getPrev();
+            prev.lock();
+            try {
+                freqNode.lock();
+                try {
+                    if (freqNode.state == 1 || prev.state == 1 || freqNode.getPrev() != prev) {
+                        continue;
+                    }
+                    int halved = (freqNode.getTime() + 1) / 2;
+                    if (prev.getTime() < halved) {
+                        freqNode.setTime(halved);
+                        agingCursor = freqNode.getNext();
+                        budget--;
+                        continue;
+                    }
+                    for (Node<K, V> node = freqNode.getFirstNode(); node != null && budget > 0; node = freqNode.getFirstNode()) {
+                        freqNode.removeNode(node);
+                        node.setFreqNode(prev);
+                        prev.addNode(node);
+                        budget--;
+                    }
+                    if (freqNode.isEmpty()) {
+                        agingCursor = freqNode.getNext();
+                        unlink(prev, freqNode);
+                    }
+                } finally {
+                    freqNode.unlock();
+                }
+            } finally {
+                prev.unlock();
+            }
+        }
     }
 
-    private void cleanLastNode(FreqNode<K, V> lastNode) {
-        if (lastNode != headFreqNode && lastNode.getPrev() != null) {
-            FreqNode<K, V> prev = lastNode.getPrev();
-            prev.executeInLock(() -> lastNode.executeInLock(() -> {
-                if (lastNode.isEmpty() && lastNode.state == 0) {
-                    lastNode.state = 1;
-                    prev.setNext(null);
+    /**
+     * Hands queued removal notifications to the executor. Public operations call
+     * this once they hold no locks, so a listener never runs under a cache lock,
+     * even with an executor that runs tasks on the calling thread. At most one
+     * delivery task is pending at a time, and it drains the whole queue.
+     */
+    private void deliverNotifications() {
+        if (notifications == null || notifications.isEmpty() || !deliveryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(deliveryTask);
+        } catch (RejectedExecutionException e) {
+            deliveryTask.run();
+        }
+    }
+
+    private void deliverQueued() {
+        do {
+            for (Notification<K, V> notification = notifications.poll(); notification != null;
+                 notification = notifications.poll()) {
+                try {
+                    removalListener.onRemoval(notification.key, notification.value, notification.cause);
+                } catch (Throwable t) {
+                    // A failing listener must not lose the notifications queued behind it
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
                 }
-            }));
+            }
+            deliveryScheduled.set(false);
+        } while (!notifications.isEmpty() && deliveryScheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * Takes {@code lock} for an insert. With statistics on, a contended acquisition
+     * is timed; the uncontended one costs a single tryLock either way.
+     */
+    private void lockForInsert() {
+        if (stats == null) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            stats.recordLockWait(System.nanoTime() - start);
+        }
+    }
+
+    private void recordRead(V value) {
+        if (value == null) {
+            stats.recordMisses(1);
+        } else {
+            stats.recordHits(1);
+        }
+    }
+
+    /**
+     * Work done under {@code lock} before an insert considers eviction: pending
+     * reads are applied so eviction sees current frequencies, expired entries
+     * are removed and aging advances.
+     */
+    private void maintain() {
+        if (readBuffer != null) {
+            readBuffer.drainTo(readApplier);
+        }
+        expireEntries();
+        if (accesses != null) {
+            ageFrequencies();
+        }
+    }
+
+    private void setExpiry(Node<K, V> node, long now, long ttlNanos) {
+        long writeExpiresAt = ttlNanos > 0 ? now + ttlNanos : Node.NEVER;
+        long accessExpiresAt = expireAfterAccessNanos > 0 ? now + expireAfterAccessNanos : Node.NEVER;
+        node.setWriteExpiresAt(writeExpiresAt);
+        node.setExpiresAt(Math.min(writeExpiresAt, accessExpiresAt));
+    }
+
+    /**
+     * Advances the timer wheel, removing entries whose deadline has passed.
+     * Called under {@code lock}.
+     */
+    private void expireEntries() {
+        if (timerWheel != null) {
+            timerWheel.advance(ticker.read(), expirer);
+        }
+    }
+
+    private void expire(Node<K, V> node) {
+        lock.lock();
+        try {
+            if (node.state == 0 && ticker.read() - node.getExpiresAt() >= 0) {
+                removeNode(node, null, RemovalCause.EXPIRED);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reschedule(Node<K, V> node) {
+        lock.lock();
+        try {
+            if (node.state == 0) {
+                if (node.getExpiresAt() != Node.NEVER) {
+                    timerWheel().reschedule(node);
+                } else if (timerWheel != null) {
+                    timerWheel.deschedule(node);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TimerWheel<K, V> timerWheel() {
+        if (timerWheel == null) {
+            timerWheel = new TimerWheel<>(ticker.read());
+        }
+        return timerWheel;
+    }
+
+    static long toNanos(Duration duration) {
+        Objects.requireNonNull(duration, "Duration cannot be null");
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        try {
+            return Math.min(duration.toNanos(), MAX_TTL_NANOS);
+        } catch (ArithmeticException e) {
+            return MAX_TTL_NANOS;
+        }
+    }
+
+    int frequency(K key) {
+        Node<K, V> node = map.get(key);
+        return node == null ? 0 : node.getFreqNode().getTime();
+    }
+
+    int sketchFrequency(K key) {
+        return sketch == null ? 0 : sketch.frequency(key);
+    }
+
+    int freqNodeCount() {
+        int count = 0;
+        for (FreqNode<K, V> current = headFreqNode; current != null; current = current.getNext()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * A load in flight. {@code thread} runs the loader, so a get it makes for the
+     * same key can be told apart from one that should wait.
+     */
+    private static final class Load<V> extends CompletableFuture<V> {
+        volatile Thread thread;
+    }
+
+    private static final class Notification<K, V> {
+        final K key;
+        final V value;
+        final RemovalCause cause;
+
+        Notification(K key, V value, RemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
         }
     }
 }
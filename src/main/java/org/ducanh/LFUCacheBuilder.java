@@ -0,0 +1,205 @@
+package org.ducanh;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects the optional settings of an {@link LFUCache}. Obtain one through
+ * {@link LFUCache#builder()}; {@code new LFUCache<>(capacity)} is equivalent to
+ * {@code LFUCache.builder().capacity(capacity).build()}.
+ */
+public class LFUCacheBuilder<K, V> {
+    int capacity;
+    long maximumWeight;
+    boolean bufferedReads;
+    boolean recordStats;
+    RemovalListener<? super K, ? super V> removalListener;
+    EvictionListener<? super K, ? super V> evictionListener;
+    Weigher<? super K, ? super V> weigher;
+    long agingPeriod;
+    int logFactor;
+    LongSupplier random = () -> ThreadLocalRandom.current().nextLong();
+    boolean tinyLfuAdmission;
+    long expireAfterWriteNanos;
+    long expireAfterAccessNanos;
+    Ticker ticker = Ticker.SYSTEM;
+    Executor executor = ForkJoinPool.commonPool();
+
+    LFUCacheBuilder() {
+    }
+
+    public LFUCacheBuilder<K, V> capacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Bounds the cache by the total weight of its entries instead of their number.
+     * Requires a {@link #weigher(Weigher)}. A capacity may still be set to bound the
+     * entry count as well; without one the count is unbounded.
+     */
+    public LFUCacheBuilder<K, V> maximumWeight(long maximumWeight) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight must be greater than 0");
+        }
+        this.maximumWeight = maximumWeight;
+        return this;
+    }
+
+    public LFUCacheBuilder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+        this.weigher = Objects.requireNonNull(weigher, "Weigher cannot be null");
+        return this;
+    }
+
+    /**
+     * Halves every entry's frequency after each {@code accesses} reads and writes,
+     * so keys that were hot once do not stay pinned after the workload moves on.
+     * The halving runs incrementally, a few entries per insert, rather than as a
+     * pass over the whole cache. Zero, the default, disables aging.
+     */
+    public LFUCacheBuilder<K, V> agingPeriod(long accesses) {
+        if (accesses < 0) {
+            throw new IllegalArgumentException("Aging period cannot be negative");
+        }
+        this.agingPeriod = accesses;
+        return this;
+    }
+
+    /**
+     * Counts accesses on a logarithmic scale, as Redis's LFU counter does: an access
+     * to an entry at frequency {@code f} moves it to {@code f + 1} with probability
+     * {@code 1 / ((f - 1) * factor + 1)}, and frequencies stop at
+     * {@value LFUCache#MAX_LOG_FREQUENCY}. Most hits on a hot key then read the value
+     * without taking a lock, and frequencies stay in a small range while still ranking
+     * keys by their order of magnitude. With a factor of 10 a key needs about 320,000
+     * accesses to reach the top.
+     */
+    public LFUCacheBuilder<K, V> logarithmicFrequency(int factor) {
+        if (factor <= 0 || factor > LFUCache.MAX_LOG_FACTOR) {
+            throw new IllegalArgumentException("Logarithmic factor must be between 1 and " + LFUCache.MAX_LOG_FACTOR);
+        }
+        this.logFactor = factor;
+        return this;
+    }
+
+    /**
+     * Source of the random numbers that decide {@link #logarithmicFrequency(int)
+     * logarithmic} promotions. Defaults to ThreadLocalRandom. Every reading thread
+     * calls it, so a supplier shared by several threads must be thread-safe; a
+     * seeded one, such as {@code new SplittableRandom(seed)::nextLong}, makes a
+     * single-threaded run repeatable.
+     */
+    public LFUCacheBuilder<K, V> random(LongSupplier random) {
+        this.random = Objects.requireNonNull(random, "Random cannot be null");
+        return this;
+    }
+
+    /**
+     * Puts a TinyLFU admission filter in front of eviction: when the cache is full,
+     * a new key is only inserted if a Count-Min Sketch (with a doorkeeper Bloom
+     * filter) estimates it is accessed more often than the entry it would evict.
+     * Otherwise the put is dropped, so scans of one-off keys cannot flush the cache.
+     */
+    public LFUCacheBuilder<K, V> tinyLfuAdmission(boolean enabled) {
+        this.tinyLfuAdmission = enabled;
+        return this;
+    }
+
+    /**
+     * Makes {@code get} read the value without taking any lock and record the hit in
+     * a striped ring buffer. The buffered hits are applied to frequencies in batches
+     * by whichever thread next holds the insert lock, so hot keys no longer contend
+     * on their FreqNode locks. Hits are dropped when a buffer is full, which keeps
+     * eviction approximately rather than exactly LFU.
+     */
+    public LFUCacheBuilder<K, V> bufferedReads(boolean enabled) {
+        this.bufferedReads = enabled;
+        return this;
+    }
+
+    /**
+     * Counts hits, misses, loads, evictions and contended waits for the insert lock,
+     * reported by {@link LFUCache#stats()}. Counters are striped {@code LongAdder}s;
+     * without this call the cache keeps no counters at all.
+     */
+    public LFUCacheBuilder<K, V> recordStats() {
+        this.recordStats = true;
+        return this;
+    }
+
+    /**
+     * Notifies {@code listener} of every entry that is removed, replaced, expires or
+     * is evicted. Notifications are queued and delivered in batches on the
+     * {@link #executor(Executor)}, after the operation that caused them has released
+     * the cache's locks.
+     */
+    public LFUCacheBuilder<K, V> removalListener(RemovalListener<? super K, ? super V> listener) {
+        this.removalListener = Objects.requireNonNull(listener, "Removal listener cannot be null");
+        return this;
+    }
+
+    /**
+     * Hands every evicted entry to {@code listener} synchronously, under the cache's
+     * lock. Used by {@link TwoTierCache} to spill to disk.
+     */
+    LFUCacheBuilder<K, V> evictionListener(EvictionListener<? super K, ? super V> listener) {
+        this.evictionListener = Objects.requireNonNull(listener, "Eviction listener cannot be null");
+        return this;
+    }
+
+    /**
+     * Expires every entry this long after it was last written. A TTL passed to
+     * {@link LFUCache#put(Object, Object, Duration)} takes precedence for that write.
+     */
+    public LFUCacheBuilder<K, V> expireAfterWrite(Duration duration) {
+        this.expireAfterWriteNanos = LFUCache.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Expires every entry this long after it was last read or written.
+     */
+    public LFUCacheBuilder<K, V> expireAfterAccess(Duration duration) {
+        this.expireAfterAccessNanos = LFUCache.toNanos(duration);
+        return this;
+    }
+
+    public LFUCacheBuilder<K, V> ticker(Ticker ticker) {
+        this.ticker = Objects.requireNonNull(ticker, "Ticker cannot be null");
+        return this;
+    }
+
+    /**
+     * Runs the loads started by {@link LFUCache#getAsync} and delivers removal
+     * notifications. Defaults to the common ForkJoinPool.
+     */
+    public LFUCacheBuilder<K, V> executor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+        return this;
+    }
+
+    public LFUCache<K, V> build() {
+        return new LFUCache<>(this);
+    }
+
+    /**
+     * Builds a cache with these settings but a different capacity and maximum
+     * weight, used by {@link ShardedLFUCache} to create its segments.
+     */
+    LFUCache<K, V> build(int segmentCapacity, long segmentWeight) {
+        int configuredCapacity = capacity;
+        long configuredWeight = maximumWeight;
+        capacity = segmentCapacity;
+        maximumWeight = segmentWeight;
+        try {
+            return new LFUCache<>(this);
+        } finally {
+            capacity = configuredCapacity;
+            maximumWeight = configuredWeight;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.ducanh;
+
+import java.util.Arrays;
+
+/**
+ * LFU bookkeeping for {@code long} keys in primitive arrays, shared by
+ * {@link LongLFUCache} and {@link Long2ObjectLFUCache}. Each entry occupies a slot
+ * in {@code 0..capacity-1}; the caches keep their values in arrays indexed by the
+ * same slot. Keys are found through an open-addressed table of slot numbers with
+ * linear probing and backward-shift deletion, so there are no tombstones.
+ *
+ * <p>Frequency buckets mirror {@link FreqNode}: a list of buckets in increasing
+ * frequency, each holding its entries in LRU order through the {@code prev} and
+ * {@code next} slot arrays. Bucket 0 is the permanent frequency 1 bucket. Empty
+ * buckets go back to a free list straight away, so eviction only looks at bucket 0
+ * and its successor.
+ *
+ * <p>Not thread-safe; the caches call it under their lock.
+ */
+class LongFrequencyIndex {
+    private static final int NONE = -1;
+    private static final int HEAD = 0;
+
+    private final int capacity;
+    private final long[] keys;
+    // Slot + 1 per table position, 0 when empty
+    private final int[] table;
+    private final int tableMask;
+    private final int[] prev;
+    private final int[] next;
+    private final int[] bucketOf;
+    private int size;
+    private int nextUnused;
+    private int freeSlot = NONE;
+
+    // Frequency buckets, grown on demand; free buckets are chained through bucketNext
+    private int[] bucketFrequency;
+    private int[] bucketFirst;
+    private int[] bucketLast;
+    private int[] bucketPrev;
+    private int[] bucketNext;
+    private int bucketsUsed;
+    private int freeBucket = NONE;
+
+    LongFrequencyIndex(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        if (capacity > 1 << 29) {
+            throw new IllegalArgumentException("Capacity cannot exceed " + (1 << 29));
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        this.bucketOf = new int[capacity];
+        // Power of two with a load factor of at most 0.75
+        int minimum = (int) Math.max(2, (long) capacity * 4 / 3 + 1);
+        int tableSize = 1 << (32 - Integer.numberOfLeadingZeros(minimum - 1));
+        this.table = new int[tableSize];
+        this.tableMask = tableSize - 1;
+        this.bucketFrequency = new int[16];
+        this.bucketFirst = new int[16];
+        this.bucketLast = new int[16];
+        this.bucketPrev = new int[16];
+        this.bucketNext = new int[16];
+        resetBuckets();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of {@code key}, or -1 if absent.
+     */
+    int find(long key) {
+        for (int i = spread(key) & tableMask; table[i] != 0; i = (i + 1) & tableMask) {
+            int slot = table[i] - 1;
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Adds an absent key at frequency 1 and returns its slot. When the index is
+     * full the least frequently used entry is evicted first and its slot reused,
+     * so the caller's value in that slot is about to be overwritten.
+     */
+    int insert(long key) {
+        if (size == capacity) {
+            remove(victim());
+        }
+        int slot;
+        if (freeSlot != NONE) {
+            slot = freeSlot;
+            freeSlot = next[slot];
+        } else {
+            slot = nextUnused++;
+        }
+        keys[slot] = key;
+        int i = spread(key) & tableMask;
+        while (table[i] != 0) {
+            i = (i + 1) & tableMask;
+        }
+        table[i] = slot + 1;
+        append(HEAD, slot);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Moves the entry to the next frequency.
+     */
+    void touch(int slot) {
+        int bucket = bucketOf[slot];
+        int frequency = bucketFrequency[bucket];
+        int successor = bucketNext[bucket];
+        if (successor == NONE || bucketFrequency[successor] != frequency + 1) {
+            successor = newBucket(frequency + 1, bucket, successor);
+        }
+        unlinkEntry(bucket, slot);
+        append(successor, slot);
+        releaseIfEmpty(bucket);
+    }
+
+    void remove(int slot) {
+        int bucket = bucketOf[slot];
+        unlinkEntry(bucket, slot);
+        releaseIfEmpty(bucket);
+        deleteFromTable(slot);
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        size--;
+    }
+
+    int frequency(int slot) {
+        return bucketFrequency[bucketOf[slot]];
+    }
+
+    /**
+     * Least recently used entry of the lowest frequency.
+     */
+    int victim() {
+        int bucket = bucketFirst[HEAD] != NONE ? HEAD : bucketNext[HEAD];
+        return bucketFirst[bucket];
+    }
+
+    int bucketCount() {
+        int count = 0;
+        for (int bucket = HEAD; bucket != NONE; bucket = bucketNext[bucket]) {
+            count++;
+        }
+        return count;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        nextUnused = 0;
+        freeSlot = NONE;
+        resetBuckets();
+    }
+
+    private void resetBuckets() {
+        bucketsUsed = 1;
+        freeBucket = NONE;
+        bucketFrequency[HEAD] = 1;
+        bucketFirst[HEAD] = NONE;
+        bucketLast[HEAD] = NONE;
+        bucketPrev[HEAD] = NONE;
+        bucketNext[HEAD] = NONE;
+    }
+
+    private void append(int bucket, int slot) {
+        int last = bucketLast[bucket];
+        prev[slot] = last;
+        next[slot] = NONE;
+        if (last == NONE) {
+            bucketFirst[bucket] = slot;
+        } else {
+            next[last] = slot;
+        }
+        bucketLast[bucket] = slot;
+        bucketOf[slot] = bucket;
+    }
+
+    private void unlinkEntry(int bucket, int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            bucketFirst[bucket] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            bucketLast[bucket] = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+
+    private int newBucket(int frequency, int before, int after) {
+        int bucket;
+        if (freeBucket != NONE) {
+            bucket = freeBucket;
+            freeBucket = bucketNext[bucket];
+        } else {
+            if (bucketsUsed == bucketFrequency.length) {
+                growBuckets();
+            }
+            bucket = bucketsUsed++;
+        }
+        bucketFrequency[bucket] = frequency;
+        bucketFirst[bucket] = NONE;
+        bucketLast[bucket] = NONE;
+        bucketPrev[bucket] = before;
+        bucketNext[bucket] = after;
+        bucketNext[before] = bucket;
+        if (after != NONE) {
+            bucketPrev[after] = bucket;
+        }
+        return bucket;
+    }
+
+    private void releaseIfEmpty(int bucket) {
+        if (bucket == HEAD || bucketFirst[bucket] != NONE) {
+            return;
+        }
+        int before = bucketPrev[bucket];
+        int after = bucketNext[bucket];
+        bucketNext[before] = after;
+        if (after != NONE) {
+            bucketPrev[after] = before;
+        }
+        bucketNext[bucket] = freeBucket;
+        freeBucket = bucket;
+    }
+
+    private void growBuckets() {
+        int length = bucketFrequency.length * 2;
+        bucketFrequency = Arrays.copyOf(bucketFrequency, length);
+        bucketFirst = Arrays.copyOf(bucketFirst, length);
+        bucketLast = Arrays.copyOf(bucketLast, length);
+        bucketPrev = Arrays.copyOf(bucketPrev, length);
+        bucketNext = Arrays.copyOf(bucketNext, length);
+    }
+
+    /**
+     * Backward-shift deletion: entries after the hole that would still be found
+     * from their home position through the hole are moved into it.
+     */
+    private void deleteFromTable(int slot) {
+        int hole = spread(keys[slot]) & tableMask;
+        while (table[hole] != slot + 1) {
+            hole = (hole + 1) & tableMask;
+        }
+        for (int i = (hole + 1) & tableMask; table[i] != 0; i = (i + 1) & tableMask) {
+            int home = spread(keys[table[i] - 1]) & tableMask;
+            // Move unless home lies cyclically within (hole, i]
+            boolean reachable = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+            if (!reachable) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private static int spread(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,115 @@
+package org.ducanh;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LFU cache from {@code long} to {@code long} that never boxes. Keys and values
+ * live in primitive arrays and the frequency lists are linked by array index (see
+ * {@link LongFrequencyIndex}), so an entry costs about 25 to 31 bytes on top of
+ * its 8 byte value, with no per-entry objects. All memory is allocated up front
+ * for the full capacity.
+ *
+ * <p>Eviction and tie-breaking match {@link LFUCache}: the least recently used
+ * entry of the lowest frequency goes first. Operations are serialized by a single
+ * lock; use several instances keyed by hash for parallel writers.
+ */
+public class LongLFUCache {
+    private final LongFrequencyIndex index;
+    private final long[] values;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public LongLFUCache(int capacity) {
+        this.index = new LongFrequencyIndex(capacity);
+        this.values = new long[capacity];
+    }
+
+    /**
+     * Returns the value of {@code key}, or {@code defaultValue} if it is not cached.
+     * A hit counts as an access.
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        lock.lock();
+        try {
+            int slot = index.find(key);
+            if (slot < 0) {
+                return defaultValue;
+            }
+            index.touch(slot);
+            return values[slot];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(long key, long value) {
+        lock.lock();
+        try {
+            int slot = index.find(key);
+            if (slot < 0) {
+                slot = index.insert(key);
+            } else {
+                index.touch(slot);
+            }
+            values[slot] = value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(long key) {
+        lock.lock();
+        try {
+            int slot = index.find(key);
+            if (slot >= 0) {
+                index.remove(slot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean containsKey(long key) {
+        lock.lock();
+        try {
+            return index.find(key) >= 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return index.capacity();
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            index.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int frequency(long key) {
+        lock.lock();
+        try {
+            int slot = index.find(key);
+            return slot < 0 ? 0 : index.frequency(slot);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,12 +1,34 @@
 package org.ducanh;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 public class Node<K, V> {
-    private final ReentrantLock reentrantLock;
+    public static final long NEVER = Long.MAX_VALUE;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<Node> EXPIRES_AT =
+            AtomicLongFieldUpdater.newUpdater(Node.class, "expiresAt");
+
     private final K key;
-    private V value;
-    private FreqNode<K, V> freqNode;
+    // Value, weight and deadlines are guarded by the owning FreqNode's lock, there is
+    // no lock per entry. Volatile so that optimistic reads can take the value without
+    // it, validated against FreqNode#version
+    private volatile V value;
+    // Weight from the cache's Weigher, 0 when the cache is not weighted
+    private int weight;
+    private volatile FreqNode<K, V> freqNode;
+    // Neighbours within the owning FreqNode, guarded by that FreqNode's lock
+    private Node<K, V> prev;
+    private Node<K, V> next;
+    // Deadlines in Ticker nanos, NEVER when the entry does not expire. Both are read
+    // by optimistic reads, so both are volatile: the validating version load then
+    // orders them, and a long is never read torn
+    private volatile long expiresAt = NEVER;
+    private volatile long writeExpiresAt = NEVER;
+    // Ticker time of insertion, only recorded when the cache records statistics
+    private long insertedAt;
+    // Neighbours within a TimerWheel bucket, guarded by the cache's insert lock
+    private Node<K, V> timerPrev;
+    private Node<K, V> timerNext;
     // 0 is LIVE, 1 is DELETED
     public volatile int state = 0;
 
@@ -14,16 +36,6 @@ public class Node<K, V> {
         this.key = key;
         this.value = value;
         this.freqNode = freqNode;
-        this.reentrantLock = new ReentrantLock();
-    }
-
-    public void executeInLock(Runnable runnable) {
-        reentrantLock.lock();
-        try {
-            runnable.run();
-        } finally {
-            reentrantLock.unlock();
-        }
     }
 
     public K getKey() {
@@ -38,6 +50,14 @@ public class Node<K, V> {
         this.value = value;
     }
 
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
     public FreqNode<K, V> getFreqNode() {
         return freqNode;
     }
@@ -45,4 +65,68 @@ public class Node<K, V> {
     public void setFreqNode(FreqNode<K, V> freqNode) {
         this.freqNode = freqNode;
     }
+
+    public Node<K, V> getPrev() {
+        return prev;
+    }
+
+    public void setPrev(Node<K, V> prev) {
+        this.prev = prev;
+    }
+
+    public Node<K, V> getNext() {
+        return next;
+    }
+
+    public void setNext(Node<K, V> next) {
+        this.next = next;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Moves the deadline without the FreqNode lock, unless a writer changed it since
+     * {@code expected} was read.
+     */
+    public boolean casExpiresAt(long expected, long expiresAt) {
+        return EXPIRES_AT.compareAndSet(this, expected, expiresAt);
+    }
+
+    public long getWriteExpiresAt() {
+        return writeExpiresAt;
+    }
+
+    public void setWriteExpiresAt(long writeExpiresAt) {
+        this.writeExpiresAt = writeExpiresAt;
+    }
+
+    public long getInsertedAt() {
+        return insertedAt;
+    }
+
+    public void setInsertedAt(long insertedAt) {
+        this.insertedAt = insertedAt;
+    }
+
+    public Node<K, V> getTimerPrev() {
+        return timerPrev;
+    }
+
+    public void setTimerPrev(Node<K, V> timerPrev) {
+        this.timerPrev = timerPrev;
+    }
+
+    public Node<K, V> getTimerNext() {
+        return timerNext;
+    }
+
+    public void setTimerNext(Node<K, V> timerNext) {
+        this.timerNext = timerNext;
+    }
 }
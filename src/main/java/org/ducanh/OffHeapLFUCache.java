@@ -0,0 +1,192 @@
+package org.ducanh;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * LFU cache that keeps its values outside the Java heap. Values are serialized into
+ * direct ByteBuffer slabs by a {@link SlabAllocator}; the map, the frequency list and
+ * a small handle per entry stay on heap, so heap usage and GC work follow the number
+ * of entries rather than the size of the values.
+ *
+ * <p>The cache is bounded by the bytes of the blocks its values occupy, and evicts
+ * as an {@link LFUCache} with that {@link LFUCacheBuilder#maximumWeight(long) maximum
+ * weight} does. Blocks of a removed or replaced entry return to the allocator once no
+ * read is copying them, and later writes reuse them, so the arena stays close to the
+ * bound. It only grows past it by the values being written at the same time, which
+ * are stored before eviction makes room for them.
+ */
+public class OffHeapLFUCache<K, V> implements Cache<K, V> {
+    static final int DEFAULT_BLOCK_SIZE = 256;
+    // Slabs are a fraction of the bound, so a small cache does not reserve a large one
+    private static final int SLABS_PER_BOUND = 16;
+
+    private final LFUCache<K, Slot> cache;
+    private final SlabAllocator allocator;
+    private final Serializer<V> serializer;
+    private final long maximumBytes;
+
+    public OffHeapLFUCache(long maximumBytes, Serializer<V> serializer) {
+        this(maximumBytes, DEFAULT_BLOCK_SIZE, serializer);
+    }
+
+    /**
+     * @param blockSize bytes per block, including a 4 byte link; a value wastes less
+     *                  than one block, so it should be small against typical values
+     */
+    public OffHeapLFUCache(long maximumBytes, int blockSize, Serializer<V> serializer) {
+        this.serializer = Objects.requireNonNull(serializer, "Serializer cannot be null");
+        this.allocator = new SlabAllocator(blockSize, maximumBytes / SLABS_PER_BOUND);
+        this.maximumBytes = maximumBytes;
+        this.cache = new LFUCacheBuilder<K, Slot>()
+                .maximumWeight(maximumBytes)
+                .weigher((key, slot) -> slot.weight)
+                .removalListener((key, slot, cause) -> release(slot))
+                // Frees on the thread that removed the entry, as soon as it leaves the cache's locks
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Returns a copy of the value deserialized from the arena. A slot released by
+     * a put or remove that ran since it was read is read again, so a key that was
+     * replaced meanwhile returns its new value rather than a miss.
+     */
+    @Override
+    public V get(K key) {
+        while (true) {
+            Slot slot = cache.get(key);
+            if (slot == null) {
+                return null;
+            }
+            if (slot.retain()) {
+                try {
+                    return allocator.read(slot.block, slot.length, serializer);
+                } finally {
+                    release(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes the value into the arena and then inserts or updates the entry.
+     * A value whose blocks exceed the maximum bytes is not stored, and removes the
+     * key's previous value.
+     */
+    @Override
+    public void put(K key, V value) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(value, "Value cannot be null");
+        int length = serializer.size(value);
+        long weight = (long) allocator.blocks(length) * allocator.blockSize();
+        if (weight > maximumBytes) {
+            cache.remove(key);
+            return;
+        }
+        int block = allocator.allocate(length);
+        try {
+            allocator.write(block, length, value, serializer);
+        } catch (RuntimeException e) {
+            allocator.free(block);
+            throw e;
+        }
+        cache.put(key, new Slot(block, length, Math.toIntExact(weight)));
+    }
+
+    @Override
+    public void remove(K key) {
+        cache.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return cache.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public int capacity() {
+        return cache.capacity();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public void shutdown() {
+        cache.shutdown();
+    }
+
+    /**
+     * Bytes of the blocks held by live entries, at most the maximum bytes.
+     */
+    public long weightedSize() {
+        return cache.weightedSize();
+    }
+
+    /**
+     * Bytes of direct memory reserved by the arena's slabs.
+     */
+    public long reservedBytes() {
+        return allocator.reservedBytes();
+    }
+
+    long allocatedBytes() {
+        return allocator.allocatedBytes();
+    }
+
+    private void release(Slot slot) {
+        if (slot.release()) {
+            allocator.free(slot.block);
+        }
+    }
+
+    /**
+     * Handle to a value's blocks. The cache holds one reference and each read in
+     * progress another; the blocks are freed when the last one is released, so a
+     * read never copies blocks that were reused by another entry.
+     */
+    private static final class Slot {
+        private static final AtomicIntegerFieldUpdater<Slot> REFERENCES =
+                AtomicIntegerFieldUpdater.newUpdater(Slot.class, "references");
+
+        private final int block;
+        private final int length;
+        private final int weight;
+        private volatile int references = 1;
+
+        private Slot(int block, int length, int weight) {
+            this.block = block;
+            this.length = length;
+            this.weight = weight;
+        }
+
+        private boolean retain() {
+            while (true) {
+                int current = references;
+                if (current == 0) {
+                    return false;
+                }
+                if (REFERENCES.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean release() {
+            return REFERENCES.decrementAndGet(this) == 0;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.ducanh;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Striped, lossy ring buffers of nodes that were read but not yet promoted. A
+ * reader appends to the stripe picked by its thread and never blocks: when the
+ * stripe is full or another reader wins the slot, the access is dropped. A single
+ * drainer at a time, holding the cache's lock, empties every stripe.
+ */
+class ReadBuffer<K, V> {
+    static final int SUCCESS = 0;
+    static final int FULL = 1;
+    static final int FAILED = 2;
+
+    private static final int BUFFER_SIZE = 16;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe<K, V>[] stripes;
+    private final int stripeShift;
+
+    @SuppressWarnings("unchecked")
+    ReadBuffer() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        // The power of two at or above the processor count
+        int count = Math.min(Integer.highestOneBit(Math.max(processors * 2 - 1, 1)), MAX_STRIPES);
+        this.stripes = (Stripe<K, V>[]) new Stripe<?, ?>[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    int offer(Node<K, V> node) {
+        return stripes[stripeIndex()].offer(node);
+    }
+
+    /**
+     * Hands every buffered node to {@code consumer}. Callers must not drain
+     * concurrently.
+     */
+    void drainTo(Consumer<Node<K, V>> consumer) {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.drainTo(consumer);
+        }
+    }
+
+    private int stripeIndex() {
+        if (stripes.length == 1) {
+            return 0;
+        }
+        int hash = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        return hash >>> stripeShift;
+    }
+
+    private static final class Stripe<K, V> {
+        private final AtomicReferenceArray<Node<K, V>> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        int offer(Node<K, V> node) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            if (tail - head >= BUFFER_SIZE) {
+                return FULL;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) tail & BUFFER_MASK, node);
+                return SUCCESS;
+            }
+            return FAILED;
+        }
+
+        void drainTo(Consumer<Node<K, V>> consumer) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) head & BUFFER_MASK;
+                Node<K, V> node = buffer.get(index);
+                if (node == null) {
+                    // Slot claimed but not written yet; picked up by the next drain
+                    break;
+                }
+                buffer.lazySet(index, null);
+                consumer.accept(node);
+            }
+            readCounter = head;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.ducanh;
+
+/**
+ * Why an entry left the cache, as reported to a {@link RemovalListener}.
+ */
+public enum RemovalCause {
+    /** Removed by {@code remove}, {@code removeAll} or {@code clear}. */
+    EXPLICIT,
+    /** Its value was overwritten by a {@code put}; the entry itself stays. */
+    REPLACED,
+    /** Its deadline passed. */
+    EXPIRED,
+    /** Removed to make room for other entries. */
+    EVICTED;
+
+    /**
+     * Whether the cache removed the entry on its own, rather than the caller.
+     */
+    public boolean wasEvicted() {
+        return this == EXPIRED || this == EVICTED;
+    }
+}
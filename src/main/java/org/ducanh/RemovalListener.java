@@ -0,0 +1,12 @@
+package org.ducanh;
+
+/**
+ * Receives entries that left the cache, see {@link LFUCacheBuilder#removalListener}.
+ * Notifications are queued while the cache holds its locks and delivered later, in
+ * batches, on the builder's executor, so a slow listener never delays the cache.
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    void onRemoval(K key, V value, RemovalCause cause);
+}
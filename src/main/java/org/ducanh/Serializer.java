@@ -0,0 +1,96 @@
+package org.ducanh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts keys and values to and from bytes, for caches that keep values outside
+ * the Java heap ({@link OffHeapLFUCache}) and for snapshots ({@link LFUCache#snapshot}).
+ */
+public interface Serializer<T> {
+    Serializer<byte[]> BYTES = new Serializer<>() {
+        @Override
+        public int size(byte[] value) {
+            return value.length;
+        }
+
+        @Override
+        public void write(byte[] value, ByteBuffer buffer) {
+            buffer.put(value);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer buffer, int length) {
+            byte[] value = new byte[length];
+            buffer.get(value);
+            return value;
+        }
+    };
+
+    Serializer<String> STRING = new Serializer<>() {
+        @Override
+        public int size(String value) {
+            return value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void write(String value, ByteBuffer buffer) {
+            buffer.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer buffer, int length) {
+            return new String(BYTES.read(buffer, length), StandardCharsets.UTF_8);
+        }
+    };
+
+    Serializer<Long> LONG = new Serializer<>() {
+        @Override
+        public int size(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int length) {
+            return buffer.getLong();
+        }
+    };
+
+    Serializer<Integer> INTEGER = new Serializer<>() {
+        @Override
+        public int size(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int length) {
+            return buffer.getInt();
+        }
+    };
+
+    /**
+     * Returns the number of bytes {@link #write} puts for the value.
+     */
+    int size(T value);
+
+    /**
+     * Writes the value at the buffer's position, which has at least
+     * {@code size(value)} bytes remaining.
+     */
+    void write(T value, ByteBuffer buffer);
+
+    /**
+     * Reads a value of {@code length} bytes from the buffer's position.
+     */
+    T read(ByteBuffer buffer, int length);
+}
@@ -0,0 +1,245 @@
+package org.ducanh;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Splits the key space into independent {@link LFUCache} segments, each with its
+ * own frequency list and insert lock, so inserts and removes on different segments
+ * run in parallel. Keys are routed by hash; eviction picks the least frequently
+ * used entry of the key's segment, which approximates global LFU when keys spread
+ * evenly across segments.
+ */
+public class ShardedLFUCache<K, V> implements Cache<K, V> {
+    private final LFUCache<K, V>[] segments;
+    private final int segmentShift;
+    private final int capacity;
+
+    public ShardedLFUCache(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public ShardedLFUCache(int capacity, int shards) {
+        this(LFUCache.<K, V>builder().capacity(capacity), shards);
+    }
+
+    /**
+     * Builds the segments from the builder's settings, splitting its capacity
+     * and maximum weight across them. There are as many segments as the highest
+     * power of two at or below {@code shards}, and at most the capacity or maximum
+     * weight. Each is bounded by its own share of the maximum weight, about
+     * {@code maximumWeight / segments}, so a heavier entry is never cached; use
+     * fewer shards when single entries can be that large.
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedLFUCache(LFUCacheBuilder<K, V> builder, int shards) {
+        int capacity = builder.capacity;
+        long maximumWeight = builder.maximumWeight;
+        boolean weighted = builder.weigher != null;
+        if (weighted && maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight must be greater than 0");
+        }
+        if (!weighted && capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Shards must be greater than 0");
+        }
+        long bound = Math.min(capacity > 0 ? capacity : Long.MAX_VALUE, weighted ? maximumWeight : Long.MAX_VALUE);
+        int segmentCount = Integer.highestOneBit((int) Math.min(shards, bound));
+        this.segments = (LFUCache<K, V>[]) new LFUCache<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = builder.build((int) share(capacity, segmentCount, i), share(maximumWeight, segmentCount, i));
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.capacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+    }
+
+    // Spreads the remainder over the first segments so the shares sum to the total
+    private static long share(long total, int segmentCount, int index) {
+        return total / segmentCount + (index < total % segmentCount ? 1 : 0);
+    }
+
+    @Override
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return segmentFor(key).get(key, loader);
+    }
+
+    public CompletableFuture<V> getAsync(K key, Function<? super K, ? extends V> loader) {
+        return segmentFor(key).getAsync(key, loader);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    public void put(K key, V value, Duration ttl) {
+        segmentFor(key).put(key, value, ttl);
+    }
+
+    @Override
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Splits the keys by segment and runs one {@link LFUCache#getAll} per segment.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = new HashMap<>();
+        List<List<K>> parts = partition(keys);
+        for (int i = 0; i < segments.length; i++) {
+            if (!parts.get(i).isEmpty()) {
+                result.putAll(segments[i].getAll(parts.get(i)));
+            }
+        }
+        return result;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        List<Map<K, V>> parts = new ArrayList<>(segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            parts.add(new HashMap<>());
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            parts.get(segmentIndex(entry.getKey())).put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (!parts.get(i).isEmpty()) {
+                segments[i].putAll(parts.get(i));
+            }
+        }
+    }
+
+    public void removeAll(Collection<? extends K> keys) {
+        List<List<K>> parts = partition(keys);
+        for (int i = 0; i < segments.length; i++) {
+            if (!parts.get(i).isEmpty()) {
+                segments[i].removeAll(parts.get(i));
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return segmentFor(key).containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (LFUCache<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    public CacheStats stats() {
+        CacheStats stats = CacheStats.EMPTY;
+        for (LFUCache<K, V> segment : segments) {
+            stats = stats.plus(segment.stats());
+        }
+        return stats;
+    }
+
+    public FrequencyHistogram frequencyHistogram() {
+        FrequencyHistogram histogram = segments[0].frequencyHistogram();
+        for (int i = 1; i < segments.length; i++) {
+            histogram = histogram.plus(segments[i].frequencyHistogram());
+        }
+        return histogram;
+    }
+
+    public EvictionHistory evictionHistory() {
+        EvictionHistory history = EvictionHistory.EMPTY;
+        for (LFUCache<K, V> segment : segments) {
+            history = history.plus(segment.evictionHistory());
+        }
+        return history;
+    }
+
+    public long weightedSize() {
+        long weightedSize = 0;
+        for (LFUCache<K, V> segment : segments) {
+            weightedSize += segment.weightedSize();
+        }
+        return weightedSize;
+    }
+
+    @Override
+    public void clear() {
+        for (LFUCache<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (LFUCache<K, V> segment : segments) {
+            if (!segment.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+        for (LFUCache<K, V> segment : segments) {
+            segment.shutdown();
+        }
+    }
+
+    public void cleanUp() {
+        for (LFUCache<K, V> segment : segments) {
+            segment.cleanUp();
+        }
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    LFUCache<K, V> segmentFor(K key) {
+        return segments[segmentIndex(key)];
+    }
+
+    private int segmentIndex(K key) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        if (segments.length == 1) {
+            return 0;
+        }
+        // Take the high bits of a multiplicative hash so routing does not
+        // correlate with the low bits each segment's ConcurrentHashMap uses
+        int hash = key.hashCode() * 0x9E3779B9;
+        return hash >>> segmentShift;
+    }
+
+    private List<List<K>> partition(Collection<? extends K> keys) {
+        List<List<K>> parts = new ArrayList<>(segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (K key : keys) {
+            parts.get(segmentIndex(key)).add(key);
+        }
+        return parts;
+    }
+}
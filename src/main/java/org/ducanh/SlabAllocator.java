@@ -0,0 +1,214 @@
+package org.ducanh;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size blocks carved from direct ByteBuffer slabs, for {@link OffHeapLFUCache}.
+ * A value occupies a chain of blocks, each starting with the index of the next
+ * one, so any free block can hold any part of any value and freed memory never
+ * fragments. Free blocks are chained the same way, so the free list costs no heap.
+ * Slabs are allocated on demand and kept; freed blocks are reused before a new slab
+ * is added.
+ *
+ * <p>Allocation and freeing are serialized by a lock. A new slab is reserved
+ * before the lock is taken, since {@code allocateDirect} can run the GC and sleep
+ * while it waits for direct memory; nothing blocks while the lock is held. Reads and
+ * writes of a chain use absolute ByteBuffer access and take no lock: the caller owns
+ * the chain from {@link #allocate} until {@link #free}.
+ */
+final class SlabAllocator {
+    static final int NONE = -1;
+    private static final int HEADER = Integer.BYTES;
+    private static final int MAX_SLAB_BYTES = 64 << 20;
+
+    private final int blockSize;
+    private final int payload;
+    private final int blocksPerSlab;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Replaced rather than resized when a slab is added, so lock-free readers see a complete array
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    // Guarded by lock
+    private int freeHead = NONE;
+    private int unused;
+    private long usedBlocks;
+
+    SlabAllocator(int blockSize, long slabBytes) {
+        if (blockSize <= HEADER) {
+            throw new IllegalArgumentException("Block size must be greater than " + HEADER);
+        }
+        this.blockSize = blockSize;
+        this.payload = blockSize - HEADER;
+        this.blocksPerSlab = (int) Math.max(1, Math.min(slabBytes, MAX_SLAB_BYTES) / blockSize);
+    }
+
+    int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the number of blocks a value of {@code length} bytes occupies, at
+     * least one.
+     */
+    int blocks(int length) {
+        return (int) Math.max(1, ((long) length + payload - 1) / payload);
+    }
+
+    /**
+     * Takes enough blocks for {@code length} bytes and returns the first of the chain.
+     * When the slabs are short of blocks, one more is reserved outside the lock and
+     * added on the next attempt, unless another writer's slab made room meanwhile.
+     */
+    int allocate(int length) {
+        int count = blocks(length);
+        ByteBuffer reserved = null;
+        while (true) {
+            lock.lock();
+            try {
+                if (reserved != null && freeBlocks() < count && !full()) {
+                    addSlab(reserved);
+                }
+                if (freeBlocks() >= count) {
+                    int first = take();
+                    int last = first;
+                    for (int i = 1; i < count; i++) {
+                        int block = take();
+                        setNext(last, block);
+                        last = block;
+                    }
+                    setNext(last, NONE);
+                    usedBlocks += count;
+                    return first;
+                }
+                if (full()) {
+                    throw new IllegalStateException("Off-heap arena cannot hold more blocks");
+                }
+            } finally {
+                lock.unlock();
+            }
+            reserved = ByteBuffer.allocateDirect(blocksPerSlab * blockSize);
+        }
+    }
+
+    /**
+     * Returns the chain starting at {@code first} to the free list.
+     */
+    void free(int first) {
+        int last = first;
+        int count = 1;
+        for (int block = next(first); block != NONE; block = next(block)) {
+            last = block;
+            count++;
+        }
+        lock.lock();
+        try {
+            setNext(last, freeHead);
+            freeHead = first;
+            usedBlocks -= count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Serializes the value into the chain. A value that fits one block is written in
+     * place; a longer one is staged in a heap buffer and copied block by block.
+     */
+    <T> void write(int first, int length, T value, Serializer<T> serializer) {
+        if (length <= payload) {
+            serializer.write(value, slab(first).slice(offset(first) + HEADER, length));
+            return;
+        }
+        ByteBuffer source = ByteBuffer.allocate(length);
+        serializer.write(value, source);
+        int position = 0;
+        for (int block = first; position < length; block = next(block)) {
+            int count = Math.min(length - position, payload);
+            slab(block).put(offset(block) + HEADER, source, position, count);
+            position += count;
+        }
+    }
+
+    /**
+     * Deserializes the value held by the chain, the counterpart of {@link #write}.
+     */
+    <T> T read(int first, int length, Serializer<T> serializer) {
+        if (length <= payload) {
+            return serializer.read(slab(first).slice(offset(first) + HEADER, length), length);
+        }
+        ByteBuffer target = ByteBuffer.allocate(length);
+        int position = 0;
+        for (int block = first; position < length; block = next(block)) {
+            int count = Math.min(length - position, payload);
+            target.put(position, slab(block), offset(block) + HEADER, count);
+            position += count;
+        }
+        return serializer.read(target, length);
+    }
+
+    /**
+     * Bytes of the blocks currently allocated.
+     */
+    long allocatedBytes() {
+        lock.lock();
+        try {
+            return usedBlocks * blockSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bytes of direct memory held by the slabs, allocated or free.
+     */
+    long reservedBytes() {
+        return (long) slabs.length * blocksPerSlab * blockSize;
+    }
+
+    private int take() {
+        if (freeHead != NONE) {
+            int block = freeHead;
+            freeHead = next(block);
+            return block;
+        }
+        return unused++;
+    }
+
+    /**
+     * Blocks on the free list plus blocks never handed out. Called under the lock.
+     */
+    private long freeBlocks() {
+        return (long) slabs.length * blocksPerSlab - usedBlocks;
+    }
+
+    /**
+     * Whether another slab would take block indexes past an int.
+     */
+    private boolean full() {
+        return (long) (slabs.length + 1) * blocksPerSlab > Integer.MAX_VALUE;
+    }
+
+    private void addSlab(ByteBuffer slab) {
+        ByteBuffer[] current = slabs;
+        ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = slab;
+        slabs = grown;
+    }
+
+    private int next(int block) {
+        return slab(block).getInt(offset(block));
+    }
+
+    private void setNext(int block, int next) {
+        slab(block).putInt(offset(block), next);
+    }
+
+    private ByteBuffer slab(int block) {
+        return slabs[block / blocksPerSlab];
+    }
+
+    private int offset(int block) {
+        return (block % blocksPerSlab) * blockSize;
+    }
+}
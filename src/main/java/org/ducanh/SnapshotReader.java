@@ -0,0 +1,85 @@
+package org.ducanh;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a snapshot written by {@link SnapshotWriter} through read-only mapped
+ * regions of the file. Serializers read keys and values straight from the mapping,
+ * without a copy or a view per record.
+ */
+final class SnapshotReader implements Closeable {
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private final int capacity;
+
+    SnapshotReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            this.region = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, SnapshotWriter.REGION_BYTES));
+            if (readInt() != SnapshotWriter.MAGIC) {
+                throw new IOException("Not an LFUCache snapshot: " + path);
+            }
+            int version = readInt();
+            if (version != SnapshotWriter.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            this.capacity = readInt();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Capacity of the cache the snapshot was taken from, 0 if it was weighted.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        return region.getInt();
+    }
+
+    long readLong() throws IOException {
+        ensure(Long.BYTES);
+        return region.getLong();
+    }
+
+    <T> T read(Serializer<T> serializer) throws IOException {
+        int length = readInt();
+        ensure(length);
+        int end = region.position() + length;
+        T value = serializer.read(region, length);
+        if (region.position() != end) {
+            throw new IOException("Serializer read " + (region.position() - end + length) + " bytes of " + length);
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensure(long bytes) throws IOException {
+        if (region.remaining() >= bytes) {
+            return;
+        }
+        regionStart += region.position();
+        if (bytes < 0 || regionStart + bytes > size) {
+            throw new IOException("Truncated snapshot");
+        }
+        region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                Math.min(size - regionStart, Math.max(SnapshotWriter.REGION_BYTES, bytes)));
+    }
+}
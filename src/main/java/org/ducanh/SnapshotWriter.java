@@ -0,0 +1,84 @@
+package org.ducanh;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes an {@link LFUCache} snapshot through memory-mapped regions of the file,
+ * mapping the next region when a record does not fit in the current one. All
+ * numbers are big-endian. The layout is:
+ *
+ * <pre>
+ * header   MAGIC, VERSION, capacity (0 for a weighted cache)
+ * bucket   frequency, count, then count entries; repeated, ascending by frequency
+ * entry    key length, key bytes, value length, value bytes
+ * trailer  0, total entry count as a long
+ * </pre>
+ */
+final class SnapshotWriter implements Closeable {
+    static final int MAGIC = 0x4C465553;
+    static final int VERSION = 1;
+    static final int REGION_BYTES = 64 << 20;
+
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long entries;
+
+    SnapshotWriter(Path path, int capacity) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_BYTES);
+        region.putInt(MAGIC).putInt(VERSION).putInt(capacity);
+    }
+
+    void writeBucket(int frequency, int count) throws IOException {
+        ensure(2 * Integer.BYTES);
+        region.putInt(frequency).putInt(count);
+        entries += count;
+    }
+
+    /**
+     * Writes a length-prefixed key or value. A serializer that writes a different
+     * number of bytes than it reported fails the snapshot.
+     */
+    <T> void write(T value, Serializer<T> serializer) throws IOException {
+        int length = serializer.size(value);
+        ensure(Integer.BYTES + (long) length);
+        region.putInt(length);
+        int end = region.position() + length;
+        serializer.write(value, region);
+        if (region.position() != end) {
+            throw new IOException("Serializer wrote " + (region.position() - end + length) + " bytes, reported " + length);
+        }
+    }
+
+    /**
+     * Writes the trailer, flushes the mapped pages and cuts the file to the bytes
+     * written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            ensure(Integer.BYTES + Long.BYTES);
+            region.putInt(0).putLong(entries);
+            region.force();
+            channel.truncate(regionStart + region.position());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(long bytes) throws IOException {
+        if (region.remaining() >= bytes) {
+            return;
+        }
+        region.force();
+        regionStart += region.position();
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(REGION_BYTES, bytes));
+    }
+}
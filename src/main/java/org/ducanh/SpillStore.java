@@ -0,0 +1,406 @@
+package org.ducanh;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk tier of a {@link TwoTierCache}: an append-only log of segment files and an
+ * in-memory index from each key to where its value sits. Entries are queued by
+ * {@link #spill} and appended by a single writer thread; until then the index holds
+ * the value itself, so an entry is readable from the moment it is spilled.
+ *
+ * <p>Segments are memory-mapped at their full size when created. The writer appends
+ * through the mapping and readers copy a value out of it without a system call or a
+ * lock. A record is a key length, a value length, the key bytes and the value bytes.
+ * A record whose key was removed, replaced or read back into memory is dead; the
+ * writer copies the live records of a sealed segment that is mostly dead into the
+ * current one and deletes the file. Past the maximum bytes the oldest segment is
+ * dropped whole, so the disk tier forgets entries in the order they were spilled.
+ *
+ * <p>The store starts empty and deletes the segments it finds, it is not a
+ * persistent copy of the cache; see {@link LFUCache#snapshot} for warm restarts.
+ */
+final class SpillStore<K, V> implements Closeable {
+    static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final long COMPACTION_PERIOD_MILLIS = 1000;
+    private static final String SEGMENT_GLOB = "segment-*.log";
+
+    private final Path directory;
+    private final long maximumBytes;
+    private final int segmentBytes;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final ConcurrentHashMap<K, Entry<V>> index = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer;
+    // Owned by the writer thread, oldest first; the last one is appended to
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private int nextSegment;
+    // Written by the writer thread only
+    private volatile long diskBytes;
+    private volatile boolean closed;
+
+    SpillStore(Path directory, long maximumBytes, int segmentBytes,
+               Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException("Maximum disk bytes must be greater than 0");
+        }
+        if (segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment bytes must be greater than " + HEADER_BYTES);
+        }
+        this.directory = Objects.requireNonNull(directory, "Directory cannot be null");
+        this.maximumBytes = maximumBytes;
+        this.segmentBytes = segmentBytes;
+        this.keySerializer = Objects.requireNonNull(keySerializer, "Key serializer cannot be null");
+        this.valueSerializer = Objects.requireNonNull(valueSerializer, "Value serializer cannot be null");
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+            for (Path leftover : leftovers) {
+                Files.delete(leftover);
+            }
+        }
+        this.writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "lfu-spill-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::compactQuietly, COMPACTION_PERIOD_MILLIS, COMPACTION_PERIOD_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Indexes the entry and queues it for the writer. Called under the memory tier's
+     * lock, so it only touches the index and the writer's queue.
+     */
+    void spill(K key, V value, int frequency) {
+        if (closed) {
+            return;
+        }
+        Entry<V> pending = new Entry<>(value, frequency);
+        discard(index.put(key, pending));
+        try {
+            writer.execute(() -> write(key, pending));
+        } catch (RejectedExecutionException e) {
+            // Closed since the check above
+            index.remove(key, pending);
+        }
+    }
+
+    Entry<V> get(K key) {
+        return index.get(key);
+    }
+
+    /**
+     * Returns the entry's value, copied out of its segment once it was written. A
+     * segment that was compacted or dropped since the entry was looked up stays
+     * mapped while the entry refers to it, so the copy is still the right value.
+     */
+    V read(Entry<V> entry) {
+        if (entry.value != null) {
+            return entry.value;
+        }
+        return valueSerializer.read(entry.segment.buffer.slice(entry.position, entry.length), entry.length);
+    }
+
+    /**
+     * Removes the key if it still maps to {@code entry}, after the entry was read
+     * back into memory.
+     */
+    boolean remove(K key, Entry<V> entry) {
+        if (index.remove(key, entry)) {
+            discard(entry);
+            return true;
+        }
+        return false;
+    }
+
+    void remove(K key) {
+        discard(index.remove(key));
+    }
+
+    boolean containsKey(K key) {
+        return index.containsKey(key);
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    void clear() {
+        for (K key : index.keySet()) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Bytes of records in the segment files, live or dead.
+     */
+    long diskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Waits until every entry spilled so far is written.
+     */
+    void flush() {
+        await(() -> {
+        });
+    }
+
+    /**
+     * Compacts every sealed segment that is mostly dead, on the writer thread, and
+     * waits for it. The writer also does this on its own, once a second and when a
+     * segment fills up.
+     */
+    void compact() {
+        await(this::compactQuietly);
+    }
+
+    int segmentCount() {
+        int[] count = new int[1];
+        await(() -> count[0] = segments.size());
+        return count[0];
+    }
+
+    /**
+     * Stops the writer, forgets every entry and deletes the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        writer.shutdownNow();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        index.clear();
+        for (Segment segment : segments) {
+            Files.deleteIfExists(segment.path);
+        }
+        segments.clear();
+        diskBytes = 0;
+    }
+
+    private void write(K key, Entry<V> pending) {
+        if (index.get(key) != pending) {
+            // Replaced, removed or read back into memory before it reached the disk
+            return;
+        }
+        try {
+            int keyLength = keySerializer.size(key);
+            int valueLength = valueSerializer.size(pending.value);
+            int record = Math.addExact(HEADER_BYTES, Math.addExact(keyLength, valueLength));
+            Segment segment = segmentFor(record);
+            boolean rolled = segment.size == 0;
+            int start = segment.size;
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.position(start);
+            buffer.putInt(keyLength).putInt(valueLength);
+            keySerializer.write(key, buffer);
+            int valueStart = buffer.position();
+            valueSerializer.write(pending.value, buffer);
+            if (valueStart != start + HEADER_BYTES + keyLength || buffer.position() != start + record) {
+                throw new IllegalStateException("Serializer wrote a different number of bytes than it reported");
+            }
+            append(segment, record);
+            Entry<V> written = new Entry<>(segment, valueStart, valueLength, record, pending.frequency);
+            if (index.replace(key, pending, written)) {
+                segment.live.addAndGet(record);
+            }
+            trim();
+            if (rolled) {
+                compact(segments.peekLast());
+            }
+        } catch (IOException | RuntimeException e) {
+            // The entry is lost from the disk tier, which only costs a miss
+            index.remove(key, pending);
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    /**
+     * Returns the segment to append {@code record} bytes to, creating a new one when
+     * the current one is full. A record larger than a segment gets one of its own.
+     */
+    private Segment segmentFor(int record) throws IOException {
+        Segment active = segments.peekLast();
+        if (active != null && record <= active.buffer.capacity() - active.size) {
+            return active;
+        }
+        Path path = directory.resolve(String.format("segment-%08d.log", nextSegment++));
+        Segment created = new Segment(path, Math.max(segmentBytes, record));
+        segments.addLast(created);
+        return created;
+    }
+
+    private void append(Segment segment, int record) {
+        segment.size += record;
+        diskBytes += record;
+    }
+
+    /**
+     * Drops the oldest segments, and the entries still in them, until the records
+     * fit in the maximum bytes. The segment being appended to is kept.
+     */
+    private void trim() throws IOException {
+        while (diskBytes > maximumBytes && segments.size() > 1) {
+            Segment oldest = segments.pollFirst();
+            evacuate(oldest, false);
+            delete(oldest);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact(segments.peekLast());
+        } catch (IOException | RuntimeException e) {
+            // Tried again on the next period
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    /**
+     * Copies the live records of every sealed segment that is less than half live
+     * into the segment being appended to, then deletes it.
+     */
+    private void compact(Segment active) throws IOException {
+        for (Segment segment : new ArrayList<>(segments)) {
+            if (segment != active && segment.live.get() * 2 < segment.size) {
+                if (segment.live.get() > 0) {
+                    evacuate(segment, true);
+                }
+                segments.remove(segment);
+                delete(segment);
+            }
+        }
+    }
+
+    /**
+     * Walks the records of a sealed segment and, for each one the index still points
+     * at, copies it to the end of the log or removes the key.
+     */
+    private void evacuate(Segment segment, boolean relocate) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        for (int position = 0; position < segment.size; ) {
+            int keyLength = buffer.getInt(position);
+            int valueLength = buffer.getInt(position + Integer.BYTES);
+            int record = HEADER_BYTES + keyLength + valueLength;
+            int valueStart = position + HEADER_BYTES + keyLength;
+            K key = keySerializer.read(buffer.slice(position + HEADER_BYTES, keyLength), keyLength);
+            Entry<V> entry = index.get(key);
+            if (entry != null && entry.segment == segment && entry.position == valueStart) {
+                if (relocate) {
+                    Segment target = segmentFor(record);
+                    int start = target.size;
+                    target.buffer.put(start, buffer, position, record);
+                    append(target, record);
+                    Entry<V> moved = new Entry<>(target, start + HEADER_BYTES + keyLength, valueLength, record,
+                            entry.frequency);
+                    if (index.replace(key, entry, moved)) {
+                        target.live.addAndGet(record);
+                    }
+                } else {
+                    index.remove(key, entry);
+                }
+            }
+            position += record;
+        }
+    }
+
+    private void delete(Segment segment) throws IOException {
+        diskBytes -= segment.size;
+        // Readers holding an entry of this segment keep its mapping, and with it the
+        // pages, alive until they are done
+        Files.deleteIfExists(segment.path);
+    }
+
+    private void discard(Entry<V> entry) {
+        if (entry != null && entry.segment != null) {
+            entry.segment.live.addAndGet(-entry.record);
+        }
+    }
+
+    private void await(Runnable task) {
+        try {
+            writer.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Where a key's value is: the value itself until the writer appends it, then a
+     * segment and the value's position and length in it.
+     */
+    static final class Entry<V> {
+        private final V value;
+        private final Segment segment;
+        private final int position;
+        private final int length;
+        private final int record;
+        private final int frequency;
+
+        private Entry(V value, int frequency) {
+            this(value, null, 0, 0, 0, frequency);
+        }
+
+        private Entry(Segment segment, int position, int length, int record, int frequency) {
+            this(null, segment, position, length, record, frequency);
+        }
+
+        private Entry(V value, Segment segment, int position, int length, int record, int frequency) {
+            this.value = value;
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.record = record;
+            this.frequency = frequency;
+        }
+
+        /**
+         * Frequency the entry had when it was evicted from memory.
+         */
+        int frequency() {
+            return frequency;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        // Bytes appended, written by the writer thread only
+        private int size;
+        // Bytes of the records the index points at
+        private final AtomicLong live = new AtomicLong();
+
+        private Segment(Path path, int capacity) throws IOException {
+            this.path = path;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping outlives the channel
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+    }
+}
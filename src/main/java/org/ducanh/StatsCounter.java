@@ -0,0 +1,85 @@
+package org.ducanh;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped counters behind {@link LFUCache#stats()}, and the ring of recent
+ * evictions behind {@link LFUCache#evictionHistory()}. Only created when the
+ * builder asks for statistics; a cache without them keeps a null counter and
+ * skips every record call.
+ */
+class StatsCounter {
+    private static final int HISTORY_SIZE = 1024;
+    private static final int HISTORY_MASK = HISTORY_SIZE - 1;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+    private final LongAdder lockWaitCount = new LongAdder();
+    private final LongAdder totalLockWaitTime = new LongAdder();
+    // Evictions run under the cache's insert lock, so the ring has a single writer
+    private final AtomicIntegerArray evictedFrequencies = new AtomicIntegerArray(HISTORY_SIZE);
+    private final AtomicLongArray evictedAges = new AtomicLongArray(HISTORY_SIZE);
+    private volatile long evictions;
+
+    void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    void recordEviction(int weight, int frequency, long age) {
+        evictionCount.increment();
+        evictionWeight.add(weight);
+        int index = (int) evictions & HISTORY_MASK;
+        evictedFrequencies.lazySet(index, frequency);
+        evictedAges.lazySet(index, age);
+        evictions++;
+    }
+
+    void recordLockWait(long waitTime) {
+        lockWaitCount.increment();
+        totalLockWaitTime.add(waitTime);
+    }
+
+    /**
+     * Copies the ring without stopping evictions; an entry overwritten during the
+     * copy may show the newer eviction.
+     */
+    EvictionHistory evictionHistory() {
+        long total = evictions;
+        int size = (int) Math.min(total, HISTORY_SIZE);
+        int[] frequencies = new int[size];
+        long[] ages = new long[size];
+        for (int i = 0; i < size; i++) {
+            int index = (int) (total - size + i) & HISTORY_MASK;
+            frequencies[i] = evictedFrequencies.get(index);
+            ages[i] = evictedAges.get(index);
+        }
+        return new EvictionHistory(frequencies, ages, total);
+    }
+
+    CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTime.sum(), evictionCount.sum(), evictionWeight.sum(), lockWaitCount.sum(),
+                totalLockWaitTime.sum());
+    }
+}
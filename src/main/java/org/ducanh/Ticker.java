@@ -0,0 +1,12 @@
+package org.ducanh;
+
+/**
+ * Source of nanosecond time for expiration. Tests and the simulator pass their own
+ * so that expiry is deterministic.
+ */
+@FunctionalInterface
+public interface Ticker {
+    Ticker SYSTEM = System::nanoTime;
+
+    long read();
+}
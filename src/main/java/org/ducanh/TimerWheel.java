@@ -0,0 +1,130 @@
+package org.ducanh;
+
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timer wheel (Varghese and Lauck) holding the nodes that have an
+ * expiration time. Scheduling, descheduling and each expiry are O(1); advancing the
+ * clock only visits the buckets whose time span has passed, cascading entries from
+ * coarse wheels into finer ones as their deadline approaches, so expiration never
+ * scans the cache. Not thread-safe: {@link LFUCache} only touches it under its
+ * insert lock.
+ */
+class TimerWheel<K, V> {
+    // Bucket counts per wheel and their spans: ~1.07s, ~1.14m, ~1.22h, ~1.63d, ~6.5d
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            Long.highestOneBit(1_000_000_000L) << 1,
+            Long.highestOneBit(60_000_000_000L) << 1,
+            Long.highestOneBit(3_600_000_000_000L) << 1,
+            Long.highestOneBit(86_400_000_000_000L) << 1,
+            BUCKETS[3] * (Long.highestOneBit(86_400_000_000_000L) << 1),
+            BUCKETS[3] * (Long.highestOneBit(86_400_000_000_000L) << 1),
+    };
+    private static final long[] SHIFT = {
+            Long.numberOfTrailingZeros(SPANS[0]),
+            Long.numberOfTrailingZeros(SPANS[1]),
+            Long.numberOfTrailingZeros(SPANS[2]),
+            Long.numberOfTrailingZeros(SPANS[3]),
+            Long.numberOfTrailingZeros(SPANS[4]),
+    };
+
+    private final Node<K, V>[][] wheel;
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        this.wheel = (Node<K, V>[][]) new Node<?, ?>[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = (Node<K, V>[]) new Node<?, ?>[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Node<K, V> sentinel = new Node<>(null, null, null);
+                sentinel.setTimerPrev(sentinel);
+                sentinel.setTimerNext(sentinel);
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Moves the clock to {@code currentNanos} and hands every node whose bucket has
+     * passed to {@code expirer}. A node the expirer declines (its deadline was pushed
+     * back by an access since it was scheduled) is scheduled again, and a node whose
+     * deadline became {@link Node#NEVER} is dropped from the wheel.
+     */
+    void advance(long currentNanos, Predicate<Node<K, V>> expirer) {
+        long previousNanos = nanos;
+        nanos = currentNanos;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousNanos >>> SHIFT[i];
+            long currentTicks = currentNanos >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, expirer);
+        }
+    }
+
+    void schedule(Node<K, V> node) {
+        Node<K, V> sentinel = findBucket(node.getExpiresAt());
+        Node<K, V> last = sentinel.getTimerPrev();
+        node.setTimerNext(sentinel);
+        node.setTimerPrev(last);
+        last.setTimerNext(node);
+        sentinel.setTimerPrev(node);
+    }
+
+    void reschedule(Node<K, V> node) {
+        deschedule(node);
+        schedule(node);
+    }
+
+    void deschedule(Node<K, V> node) {
+        Node<K, V> prev = node.getTimerPrev();
+        if (prev == null) {
+            return;
+        }
+        Node<K, V> next = node.getTimerNext();
+        prev.setTimerNext(next);
+        next.setTimerPrev(prev);
+        node.setTimerPrev(null);
+        node.setTimerNext(null);
+    }
+
+    private void expire(int index, long previousTicks, long delta, Predicate<Node<K, V>> expirer) {
+        Node<K, V>[] buckets = wheel[index];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Node<K, V> sentinel = buckets[i & mask];
+            Node<K, V> node = sentinel.getTimerNext();
+            sentinel.setTimerPrev(sentinel);
+            sentinel.setTimerNext(sentinel);
+            while (node != sentinel) {
+                Node<K, V> next = node.getTimerNext();
+                node.setTimerPrev(null);
+                node.setTimerNext(null);
+                long expiresAt = node.getExpiresAt();
+                // A deadline cleared since scheduling leaves the wheel; NEVER - nanos could overflow
+                if (expiresAt != Node.NEVER && (expiresAt - nanos > 0 || !expirer.test(node))) {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private Node<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = time >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+}
@@ -0,0 +1,161 @@
+package org.ducanh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * An {@link LFUCache} in memory in front of a larger tier on local disk. Entries the
+ * memory tier evicts are spilled to disk instead of being dropped, and a read that
+ * misses memory but finds the key on disk brings the entry back. The disk tier is an
+ * append-only log of segment files with an index in memory, written in the
+ * background, see {@link SpillStore}.
+ *
+ * <p>A spilled entry keeps the frequency it had when it was evicted, and comes back at
+ * that frequency plus the read that found it, rather than at the head of the frequency
+ * list. An entry that was hot before a burst pushed it out is then not the next victim
+ * again.
+ *
+ * <p>Statistics of the memory tier count a read served from disk as a miss. A read
+ * that brings an entry back races a remove of the same key as a load does: the entry
+ * can be reinserted after the remove.
+ */
+public class TwoTierCache<K, V> implements Cache<K, V> {
+    private final LFUCache<K, V> memory;
+    private final SpillStore<K, V> disk;
+
+    /**
+     * @param memory          settings of the memory tier; its eviction feeds the disk tier
+     * @param directory       where segment files are written; segments left there by an
+     *                        earlier run are deleted
+     * @param maximumDiskBytes bound on the segment files, past which the oldest spilled
+     *                        entries are dropped
+     */
+    public TwoTierCache(LFUCacheBuilder<K, V> memory, Path directory, long maximumDiskBytes,
+                        Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        this(memory, directory, maximumDiskBytes, SpillStore.DEFAULT_SEGMENT_BYTES, keySerializer, valueSerializer);
+    }
+
+    TwoTierCache(LFUCacheBuilder<K, V> memory, Path directory, long maximumDiskBytes, int segmentBytes,
+                 Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        this.disk = new SpillStore<>(directory, maximumDiskBytes, segmentBytes, keySerializer, valueSerializer);
+        try {
+            this.memory = memory.evictionListener(disk::spill).build();
+        } catch (RuntimeException e) {
+            disk.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the value from memory, or from disk, in which case the entry moves back
+     * into memory unless the memory tier's admission filter turns it away.
+     */
+    @Override
+    public V get(K key) {
+        V value = memory.get(key);
+        if (value != null) {
+            return value;
+        }
+        SpillStore.Entry<V> entry = disk.get(key);
+        if (entry == null) {
+            return null;
+        }
+        value = disk.read(entry);
+        // Inserted before the disk copy is dropped, so a concurrent read finds one of them
+        if (memory.putIfAbsent(key, value, entry.frequency() + 1)) {
+            disk.remove(key, entry);
+        }
+        return value;
+    }
+
+    /**
+     * Writes to memory. A copy of the key on disk is dropped first, so an older value
+     * cannot come back from there.
+     */
+    @Override
+    public void put(K key, V value) {
+        disk.remove(key);
+        memory.put(key, value);
+    }
+
+    /**
+     * Removes the key from both tiers. Memory goes first: an eviction that would
+     * spill the entry happens under the memory tier's lock, so it has either spilled
+     * already and is removed from disk next, or cannot happen any more.
+     */
+    @Override
+    public void remove(K key) {
+        memory.remove(key);
+        disk.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return memory.containsKey(key) || disk.containsKey(key);
+    }
+
+    /**
+     * Entries in memory plus entries on disk.
+     */
+    @Override
+    public int size() {
+        return memory.size() + disk.size();
+    }
+
+    /**
+     * Capacity of the memory tier.
+     */
+    @Override
+    public int capacity() {
+        return memory.capacity();
+    }
+
+    @Override
+    public void clear() {
+        memory.clear();
+        disk.clear();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return memory.isEmpty() && disk.size() == 0;
+    }
+
+    /**
+     * Stops the disk tier's writer and deletes its segment files.
+     */
+    @Override
+    public void shutdown() {
+        memory.shutdown();
+        try {
+            disk.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int memorySize() {
+        return memory.size();
+    }
+
+    public int diskSize() {
+        return disk.size();
+    }
+
+    /**
+     * Bytes of records in the segment files, including those of entries that were
+     * removed and not compacted yet.
+     */
+    public long diskBytes() {
+        return disk.diskBytes();
+    }
+
+    LFUCache<K, V> memory() {
+        return memory;
+    }
+
+    SpillStore<K, V> disk() {
+        return disk;
+    }
+}
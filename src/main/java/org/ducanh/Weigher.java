@@ -0,0 +1,12 @@
+package org.ducanh;
+
+/**
+ * Computes the weight of an entry for caches bounded by
+ * {@link LFUCacheBuilder#maximumWeight(long)}. An entry's weight is taken when it is
+ * written and must not be negative.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    int weigh(K key, V value);
+}
@@ -0,0 +1,81 @@
+package org.ducanh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Hit ratios of each simulated policy at each capacity.
+ */
+public final class HitRatioCurve {
+    private final List<String> policies;
+    private final int[] capacities;
+    private final long events;
+    private final long[][] hits;
+
+    HitRatioCurve(List<String> policies, int[] capacities, long events, long[][] hits) {
+        this.policies = policies;
+        this.capacities = capacities;
+        this.events = events;
+        this.hits = hits;
+    }
+
+    public List<String> policies() {
+        return policies;
+    }
+
+    public int[] capacities() {
+        return capacities.clone();
+    }
+
+    public long events() {
+        return events;
+    }
+
+    /**
+     * Hit ratio of {@code policy} at the capacity with index {@code capacityIndex}.
+     */
+    public double hitRatio(String policy, int capacityIndex) {
+        int index = policies.indexOf(policy);
+        if (index < 0) {
+            throw new IllegalArgumentException("Policy was not simulated: " + policy);
+        }
+        return events == 0 ? 0 : (double) hits[index][capacityIndex] / events;
+    }
+
+    /**
+     * Formats the curve as a table with a row per capacity and a column per policy.
+     */
+    public String format() {
+        StringBuilder table = new StringBuilder(String.format("%12s", "capacity"));
+        for (String policy : policies) {
+            table.append(String.format("%12s", policy));
+        }
+        table.append('\n');
+        for (int c = 0; c < capacities.length; c++) {
+            table.append(String.format("%12d", capacities[c]));
+            for (String policy : policies) {
+                table.append(String.format("%11.2f%%", 100 * hitRatio(policy, c)));
+            }
+            table.append('\n');
+        }
+        return table.toString();
+    }
+
+    public void writeCsv(Path path) throws IOException {
+        StringBuilder csv = new StringBuilder("capacity");
+        for (String policy : policies) {
+            csv.append(',').append(policy);
+        }
+        csv.append('\n');
+        for (int c = 0; c < capacities.length; c++) {
+            csv.append(capacities[c]);
+            for (String policy : policies) {
+                csv.append(',').append(hitRatio(policy, c));
+            }
+            csv.append('\n');
+        }
+        Files.writeString(path, csv);
+    }
+}
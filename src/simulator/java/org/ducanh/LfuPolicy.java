@@ -0,0 +1,29 @@
+package org.ducanh;
+
+/**
+ * Simulates an {@link LFUCache} built from the given builder.
+ */
+final class LfuPolicy implements Policy {
+    private final String name;
+    private final LFUCache<Long, Boolean> cache;
+
+    LfuPolicy(String name, LFUCacheBuilder<Long, Boolean> builder) {
+        this.name = name;
+        // Single-threaded and deterministic: nothing is handed to another thread
+        this.cache = builder.executor(Runnable::run).build();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean access(long key) {
+        if (cache.get(key) != null) {
+            return true;
+        }
+        cache.put(key, Boolean.TRUE);
+        return false;
+    }
+}
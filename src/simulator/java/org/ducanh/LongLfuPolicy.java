@@ -0,0 +1,27 @@
+package org.ducanh;
+
+/**
+ * Simulates a {@link LongLFUCache}, which evicts as {@link LFUCache} does without
+ * boxing, so long traces replay faster.
+ */
+final class LongLfuPolicy implements Policy {
+    private final LongLFUCache cache;
+
+    LongLfuPolicy(int capacity) {
+        this.cache = new LongLFUCache(capacity);
+    }
+
+    @Override
+    public String name() {
+        return "long-lfu";
+    }
+
+    @Override
+    public boolean access(long key) {
+        if (cache.getOrDefault(key, 0) != 0) {
+            return true;
+        }
+        cache.put(key, 1);
+        return false;
+    }
+}
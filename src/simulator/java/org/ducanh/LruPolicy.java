@@ -0,0 +1,34 @@
+package org.ducanh;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used eviction, the baseline the LFU policies are compared with.
+ */
+final class LruPolicy implements Policy {
+    private final Map<Long, Boolean> entries;
+
+    LruPolicy(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public String name() {
+        return "lru";
+    }
+
+    @Override
+    public boolean access(long key) {
+        if (entries.get(key) != null) {
+            return true;
+        }
+        entries.put(key, Boolean.TRUE);
+        return false;
+    }
+}
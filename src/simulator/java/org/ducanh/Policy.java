@@ -0,0 +1,53 @@
+package org.ducanh;
+
+import java.util.SplittableRandom;
+
+/**
+ * A cache eviction policy under simulation. Policies only track keys; the simulator
+ * counts an access as a hit when the key is cached and otherwise inserts it.
+ */
+public interface Policy {
+
+    String name();
+
+    /**
+     * Accesses {@code key}, inserting it on a miss, and returns whether it was cached.
+     */
+    boolean access(long key);
+
+    /**
+     * Creates a policy by name:
+     * <ul>
+     *   <li>{@code lfu}: {@link LFUCache} with its defaults</li>
+     *   <li>{@code lfu-aging}: {@link LFUCache} halving frequencies every ten times
+     *       its capacity in accesses</li>
+     *   <li>{@code lfu-log}: {@link LFUCache} with logarithmic frequencies, factor 10,
+     *       promoting with a fixed seed so that runs are repeatable</li>
+     *   <li>{@code tinylfu}: {@link LFUCache} with TinyLFU admission</li>
+     *   <li>{@code long-lfu}: {@link LongLFUCache}</li>
+     *   <li>{@code lru}: least recently used, for reference</li>
+     * </ul>
+     * LFUCache policies read time from {@code ticker}.
+     */
+    static Policy of(String name, int capacity, Ticker ticker) {
+        switch (name) {
+            case "lfu":
+                return new LfuPolicy(name, LFUCache.<Long, Boolean>builder().capacity(capacity).ticker(ticker));
+            case "lfu-aging":
+                return new LfuPolicy(name, LFUCache.<Long, Boolean>builder().capacity(capacity).ticker(ticker)
+                        .agingPeriod(10L * capacity));
+            case "lfu-log":
+                return new LfuPolicy(name, LFUCache.<Long, Boolean>builder().capacity(capacity).ticker(ticker)
+                        .logarithmicFrequency(10).random(new SplittableRandom(42)::nextLong));
+            case "tinylfu":
+                return new LfuPolicy(name, LFUCache.<Long, Boolean>builder().capacity(capacity).ticker(ticker)
+                        .tinyLfuAdmission(true));
+            case "long-lfu":
+                return new LongLfuPolicy(capacity);
+            case "lru":
+                return new LruPolicy(capacity);
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.ducanh;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a trace through cache policies at several capacities and reports the hit
+ * ratio of each as a curve. The trace is read once: every access goes to one policy
+ * instance per policy and capacity. Runs on a single thread, on a clock that advances
+ * one microsecond per access, so a trace always gives the same curve.
+ *
+ * <p>Arguments: {@code --trace <specification>} (see {@link Trace#of}),
+ * {@code --capacities <c1,c2,...>}, {@code --policies <p1,p2,...>} (see
+ * {@link Policy#of}, default {@code lfu,tinylfu,lru}) and {@code --csv <path>} to
+ * also write the curve as CSV.
+ */
+public final class Simulator {
+    private static final long TICK_NANOS = 1_000;
+
+    private final Trace trace;
+    private final int[] capacities;
+    private final List<String> policies;
+    private long now;
+
+    public Simulator(Trace trace, int[] capacities, List<String> policies) {
+        if (capacities.length == 0 || policies.isEmpty()) {
+            throw new IllegalArgumentException("At least one capacity and one policy are needed");
+        }
+        this.trace = trace;
+        this.capacities = capacities.clone();
+        this.policies = List.copyOf(policies);
+    }
+
+    public HitRatioCurve run() throws IOException {
+        Ticker clock = () -> now;
+        Policy[][] instances = new Policy[policies.size()][capacities.length];
+        for (int p = 0; p < policies.size(); p++) {
+            for (int c = 0; c < capacities.length; c++) {
+                instances[p][c] = Policy.of(policies.get(p), capacities[c], clock);
+            }
+        }
+        long[][] hits = new long[policies.size()][capacities.length];
+        long[] events = new long[1];
+        trace.replay(key -> {
+            now += TICK_NANOS;
+            events[0]++;
+            for (int p = 0; p < instances.length; p++) {
+                for (int c = 0; c < capacities.length; c++) {
+                    if (instances[p][c].access(key)) {
+                        hits[p][c]++;
+                    }
+                }
+            }
+        });
+        return new HitRatioCurve(policies, capacities, events[0], hits);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String trace = null;
+        String capacities = null;
+        String policies = "lfu,tinylfu,lru";
+        String csv = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--trace":
+                    trace = args[i + 1];
+                    break;
+                case "--capacities":
+                    capacities = args[i + 1];
+                    break;
+                case "--policies":
+                    policies = args[i + 1];
+                    break;
+                case "--csv":
+                    csv = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (trace == null || capacities == null) {
+            System.err.println("Usage: Simulator --trace <specification> --capacities <c1,c2,...>"
+                    + " [--policies lfu,lfu-aging,lfu-log,tinylfu,long-lfu,lru] [--csv <path>]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        HitRatioCurve curve = new Simulator(Trace.of(trace),
+                Arrays.stream(capacities.split(",")).mapToInt(c -> Integer.parseInt(c.trim())).toArray(),
+                Arrays.asList(policies.split(","))).run();
+        System.out.printf("%s: %d accesses in %.1f s%n", trace, curve.events(), (System.nanoTime() - start) / 1e9);
+        System.out.print(curve.format());
+        if (csv != null) {
+            curve.writeCsv(Path.of(csv));
+        }
+    }
+}
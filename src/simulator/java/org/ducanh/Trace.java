@@ -0,0 +1,125 @@
+package org.ducanh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A sequence of key accesses. Every trace is produced on demand, so a file is read
+ * line by line and a generator keeps no keys, and traces of any length replay in
+ * constant memory.
+ */
+@FunctionalInterface
+public interface Trace {
+
+    void replay(LongConsumer keys) throws IOException;
+
+    /**
+     * Streams {@code path} through {@code format}. Files ending in {@code .gz} are
+     * decompressed on the fly.
+     */
+    static Trace file(Path path, TraceFormat format) {
+        return keys -> {
+            try (InputStream input = Files.newInputStream(path);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(
+                         path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(input, 1 << 16) : input,
+                         StandardCharsets.UTF_8), 1 << 20)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    format.parse(line, keys);
+                }
+            }
+        };
+    }
+
+    /**
+     * {@code events} accesses over {@code items} keys with a Zipfian popularity,
+     * see {@link ZipfianGenerator}.
+     */
+    static Trace zipf(int items, long events, double theta, long seed) {
+        return keys -> {
+            ZipfianGenerator generator = new ZipfianGenerator(items, theta, seed);
+            for (long i = 0; i < events; i++) {
+                keys.accept(generator.next());
+            }
+        };
+    }
+
+    /**
+     * {@code events} accesses to keys that are never seen again, as a scan or a
+     * batch job pollutes a cache. Keys start at {@code first}.
+     */
+    static Trace scan(long first, long events) {
+        return keys -> {
+            for (long i = 0; i < events; i++) {
+                keys.accept(first + i);
+            }
+        };
+    }
+
+    /**
+     * {@code events} accesses cycling through keys {@code 0} to {@code items - 1},
+     * the access pattern that defeats LRU once it is larger than the cache.
+     */
+    static Trace loop(int items, long events) {
+        return keys -> {
+            for (long i = 0; i < events; i++) {
+                keys.accept(i % items);
+            }
+        };
+    }
+
+    static Trace concat(List<Trace> traces) {
+        return keys -> {
+            for (Trace trace : traces) {
+                trace.replay(keys);
+            }
+        };
+    }
+
+    /**
+     * Parses a trace specification: {@code zipf:<items>:<events>[:<theta>]},
+     * {@code scan:<events>}, {@code loop:<items>:<events>} or
+     * {@code file:<path>[@<format>]}, where format is one {@link TraceFormat#of}
+     * accepts and defaults to a key per line. Specifications joined with {@code +}
+     * play one after another, and scans draw keys no other part uses.
+     */
+    static Trace of(String specification) {
+        String[] parts = specification.split("\\+");
+        if (parts.length > 1) {
+            Trace[] traces = new Trace[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                traces[i] = of(parts[i], (long) (i + 1) << 40);
+            }
+            return concat(List.of(traces));
+        }
+        return of(specification, 1L << 40);
+    }
+
+    private static Trace of(String specification, long scanStart) {
+        if (specification.startsWith("file:")) {
+            String file = specification.substring(5);
+            int at = file.lastIndexOf('@');
+            return at < 0 ? file(Path.of(file), TraceFormat.KEYS)
+                    : file(Path.of(file.substring(0, at)), TraceFormat.of(file.substring(at + 1)));
+        }
+        String[] fields = specification.split(":");
+        switch (fields[0]) {
+            case "zipf":
+                return zipf(Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                        fields.length > 3 ? Double.parseDouble(fields[3]) : ZipfianGenerator.DEFAULT_THETA, 42);
+            case "scan":
+                return scan(scanStart, Long.parseLong(fields[1]));
+            case "loop":
+                return loop(Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+            default:
+                throw new IllegalArgumentException("Unknown trace: " + specification);
+        }
+    }
+}
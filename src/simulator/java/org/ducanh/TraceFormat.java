@@ -0,0 +1,142 @@
+package org.ducanh;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Turns one line of a trace file into the keys it accesses. Numeric keys are used
+ * as they are; any other key is hashed to 64 bits, so string keys need no
+ * dictionary and a trace of any size streams in constant memory.
+ */
+@FunctionalInterface
+public interface TraceFormat {
+    /**
+     * A key per line, as in plain key dumps and the LIRS traces. Blank lines, the
+     * LIRS {@code *} end marker and {@code #} comments are skipped.
+     */
+    TraceFormat KEYS = (line, keys) -> {
+        String key = line.trim();
+        if (!key.isEmpty() && key.charAt(0) != '*' && key.charAt(0) != '#') {
+            keys.accept(key(key, 0, key.length()));
+        }
+    };
+
+    /**
+     * The ARC traces of Megiddo and Modha: {@code start count ignored request},
+     * accessing blocks {@code start} to {@code start + count - 1}.
+     */
+    TraceFormat ARC = (line, keys) -> {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length < 2) {
+            return;
+        }
+        long start = Long.parseLong(fields[0]);
+        long count = Long.parseLong(fields[1]);
+        for (long block = start; block < start + count; block++) {
+            keys.accept(block);
+        }
+    };
+
+    /**
+     * The UMass SPC traces (Financial, WebSearch): {@code asu,lba,size,opcode,timestamp}.
+     * Each request is one access, keyed by its unit and logical block address.
+     */
+    TraceFormat SPC = (line, keys) -> {
+        String[] fields = line.split(",");
+        if (fields.length < 2 || !isNumber(fields[0].trim(), 0, fields[0].trim().length())) {
+            return;
+        }
+        keys.accept(Long.parseLong(fields[0].trim()) << 48 ^ Long.parseLong(fields[1].trim()));
+    };
+
+    /**
+     * Twitter's production cache traces: {@code timestamp,key,key size,value size,
+     * client,operation,ttl}.
+     */
+    TraceFormat TWITTER = csv(1);
+
+    void parse(String line, LongConsumer keys);
+
+    /**
+     * Comma-separated lines whose key sits in column {@code column}, counted from 0.
+     * Lines with fewer columns are skipped; a header line counts as one access.
+     */
+    static TraceFormat csv(int column) {
+        if (column < 0) {
+            throw new IllegalArgumentException("Column cannot be negative");
+        }
+        return (line, keys) -> {
+            int start = 0;
+            for (int i = 0; i < column; i++) {
+                start = line.indexOf(',', start) + 1;
+                if (start == 0) {
+                    return;
+                }
+            }
+            int end = line.indexOf(',', start);
+            keys.accept(key(line, start, end < 0 ? line.length() : end));
+        };
+    }
+
+    /**
+     * Returns the format for {@code keys}, {@code arc}, {@code spc}, {@code twitter}
+     * or {@code csv:<column>}.
+     */
+    static TraceFormat of(String name) {
+        String lower = name.toLowerCase();
+        if (lower.startsWith("csv")) {
+            return csv(lower.length() > 4 ? Integer.parseInt(lower.substring(4)) : 0);
+        }
+        switch (lower) {
+            case "keys":
+            case "lirs":
+                return KEYS;
+            case "arc":
+                return ARC;
+            case "spc":
+            case "umass":
+                return SPC;
+            case "twitter":
+                return TWITTER;
+            default:
+                throw new IllegalArgumentException("Unknown trace format: " + name);
+        }
+    }
+
+    /**
+     * Parses {@code text[start, end)} as a decimal key, or hashes it with 64-bit
+     * FNV-1a when it is not a number that fits in a long.
+     */
+    static long key(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (isNumber(text, start, end) && end - start <= 18) {
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                value = value * 10 + (text.charAt(i) - '0');
+            }
+            return value;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static boolean isNumber(CharSequence text, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package org.ducanh;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipfian key generator following Gray et al., "Quickly Generating Billion-Record
+ * Synthetic Databases" (the same construction YCSB uses). Rank 0 is the hottest key;
+ * ranks are scrambled so hot keys do not cluster at the low end of the key space.
+ */
+public class ZipfianGenerator {
+    public static final double DEFAULT_THETA = 0.99;
+
+    private final int items;
+    private final double theta;
+    private final double alpha;
+    private final double zetan;
+    private final double eta;
+    private final SplittableRandom random;
+
+    public ZipfianGenerator(int items, double theta, long seed) {
+        this.items = items;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetan = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+        this.random = new SplittableRandom(seed);
+    }
+
+    public int next() {
+        double u = random.nextDouble();
+        double uz = u * zetan;
+        int rank;
+        if (uz < 1.0) {
+            rank = 0;
+        } else if (uz < 1.0 + Math.pow(0.5, theta)) {
+            rank = 1;
+        } else {
+            rank = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+        }
+        return scramble(Math.min(rank, items - 1));
+    }
+
+    public int[] sample(int count) {
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = next();
+        }
+        return keys;
+    }
+
+    private int scramble(int rank) {
+        long h = rank * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (int) Math.floorMod(h, (long) items);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,142 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tests for the TinyLFU admission filter
+ * These tests replay a skewed trace polluted by scans through caches with and without admission
+ */
+public class LFUCacheAdmissionTest {
+
+    @Test
+    void testSketchCountsRepeatedKeysAboveOneHitWonders() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(1000);
+
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(1);
+        }
+        sketch.increment(2);
+
+        assertTrue(sketch.frequency(1) >= 10);
+        assertEquals(1, sketch.frequency(2));  // doorkeeper only
+        assertEquals(0, sketch.frequency(3));
+    }
+
+    @Test
+    void testConcurrentIncrementsHalveTheSketchOnce() throws Exception {
+        // Resets after 10,000 additions
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(1000);
+        for (int i = 0; i < 16; i++) {
+            sketch.increment(-1);
+        }
+        assertEquals(16, sketch.frequency(-1));
+
+        // Distinct keys only set doorkeeper bits, so the hot key's counters are its own
+        int threads = 4;
+        int perThread = (10_000 - 16) / threads;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * perThread;
+            futures.add(executor.submit(() -> {
+                for (int key = first; key < first + perThread; key++) {
+                    sketch.increment(key);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // The last addition reached 10,000: halved once, and the doorkeeper cleared with it
+        assertEquals(7, sketch.frequency(-1));
+    }
+
+    @Test
+    void testScanDoesNotFlushAdmittedEntries() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(100)
+                .tinyLfuAdmission(true)
+                .build();
+
+        for (int key = 0; key < 100; key++) {
+            cache.put(key, key);
+            cache.get(key);
+        }
+        // One-off keys are seen once each, the residents twice
+        for (int key = 1000; key < 1200; key++) {
+            cache.put(key, key);
+        }
+
+        // The sketch is approximate, so allow a stray false positive
+        int survivors = 0;
+        for (int key = 0; key < 100; key++) {
+            survivors += cache.containsKey(key) ? 1 : 0;
+        }
+        assertTrue(survivors >= 98, "only " + survivors + " residents survived the scan");
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    void testRepeatedKeyIsAdmitted() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(2)
+                .tinyLfuAdmission(true)
+                .build();
+
+        cache.put(1, 10);
+        cache.put(2, 20);
+        for (int i = 0; i < 5; i++) {
+            cache.get(3);  // misses still count as accesses
+        }
+        cache.put(3, 30);
+
+        assertTrue(cache.containsKey(3));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testAdmissionImprovesHitRatioOnScanPollutedTrace() {
+        // Skewed traffic over 2000 keys, interrupted every 5000 requests by a
+        // scan of 500 keys that are never requested again
+        double plain = hitRatio(LFUCache.<Integer, Integer>builder().capacity(200).build());
+        double admission = hitRatio(LFUCache.<Integer, Integer>builder()
+                .capacity(200)
+                .tinyLfuAdmission(true)
+                .build());
+
+        // The trace is seeded: 0.509 without admission and 0.521 with it
+        assertTrue(plain > 0.45, "plain " + plain);
+        assertTrue(admission >= plain + 0.005, "admission " + admission + " should beat plain " + plain);
+    }
+
+    private static double hitRatio(LFUCache<Integer, Integer> cache) {
+        Random random = new Random(7);
+        int scanKey = 1_000_000;
+        int hits = 0;
+        int requests = 0;
+        for (int i = 0; i < 200_000; i++) {
+            if (i % 5_000 == 0) {
+                for (int s = 0; s < 500; s++) {
+                    access(cache, scanKey++);
+                }
+            }
+            int key = (int) (Math.pow(random.nextDouble(), 4) * 2000);
+            hits += access(cache, key) ? 1 : 0;
+            requests++;
+        }
+        return (double) hits / requests;
+    }
+
+    private static boolean access(LFUCache<Integer, Integer> cache, int key) {
+        if (cache.get(key) != null) {
+            return true;
+        }
+        cache.put(key, key);
+        return false;
+    }
+}
@@ -0,0 +1,103 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for frequency aging
+ * These tests check that frequencies are halved and that the cache recovers after a workload shift
+ */
+public class LFUCacheAgingTest {
+
+    @Test
+    void testFrequenciesAreHalvedAfterAgingPeriod() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .agingPeriod(100)
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i);
+        }
+        for (int i = 0; i < 60; i++) cache.get(0);  // freq(0) = 61
+        for (int i = 0; i < 30; i++) cache.get(1);  // freq(1) = 31
+        cache.get(2);                               // freq(2) = 2
+        // 96 accesses so far; the insert that reaches 100 starts the pass
+        for (int i = 5; i < 9; i++) {
+            cache.put(i, i);
+        }
+
+        assertEquals(31, cache.frequency(0));
+        assertEquals(16, cache.frequency(1));
+        assertEquals(1, cache.frequency(2));   // merged into the head
+        assertEquals(1, cache.frequency(3));
+        assertEquals(3, cache.freqNodeCount());
+    }
+
+    @Test
+    void testOrderingSurvivesAging() {
+        // After halving, eviction still follows the relative frequencies
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(3)
+                .agingPeriod(20)
+                .build();
+
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.put(3, 30);
+        for (int i = 0; i < 10; i++) cache.get(1);  // freq(1) = 11
+        for (int i = 0; i < 6; i++) cache.get(2);   // freq(2) = 7
+        // freq(3) = 1; 19 accesses, the next insert triggers aging
+        cache.put(4, 40);
+
+        assertFalse(cache.containsKey(3));
+        assertEquals(6, cache.frequency(1));
+        assertEquals(4, cache.frequency(2));
+        cache.put(5, 50);
+        assertFalse(cache.containsKey(4));
+        assertTrue(cache.containsKey(1));
+        assertTrue(cache.containsKey(2));
+    }
+
+    @Test
+    void testHitRatioRecoversAfterWorkloadShift() {
+        double withoutAging = hitRatioAfterShift(LFUCache.<Integer, Integer>builder().capacity(100).build());
+        double withAging = hitRatioAfterShift(LFUCache.<Integer, Integer>builder()
+                .capacity(100)
+                .agingPeriod(1_000)
+                .build());
+
+        assertTrue(withoutAging < 0.1, "formerly hot keys should pin the cache, was " + withoutAging);
+        assertTrue(withAging > 0.9, "aging should let the new hot set in, was " + withAging);
+    }
+
+    private static double hitRatioAfterShift(LFUCache<Integer, Integer> cache) {
+        // Phase 1: keys 0-99 are hot
+        for (int round = 0; round < 200; round++) {
+            for (int key = 0; key < 100; key++) {
+                getOrLoad(cache, key);
+            }
+        }
+        // Phase 2: traffic moves to keys 1000-1099, measure the second half
+        int hits = 0;
+        int lookups = 0;
+        for (int round = 0; round < 400; round++) {
+            for (int key = 1000; key < 1100; key++) {
+                boolean hit = getOrLoad(cache, key);
+                if (round >= 200) {
+                    lookups++;
+                    hits += hit ? 1 : 0;
+                }
+            }
+        }
+        return (double) hits / lookups;
+    }
+
+    private static boolean getOrLoad(LFUCache<Integer, Integer> cache, int key) {
+        if (cache.get(key) != null) {
+            return true;
+        }
+        cache.put(key, key);
+        return false;
+    }
+}
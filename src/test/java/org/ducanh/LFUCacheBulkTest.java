@@ -0,0 +1,224 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for getAll, putAll and removeAll
+ * These tests check that bulk operations match their single-key equivalents
+ */
+public class LFUCacheBulkTest {
+
+    @Test
+    void testGetAllReturnsHitsAndPromotesEachOnce() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+        cache.get(3);
+
+        Map<Integer, String> result = cache.getAll(Arrays.asList(1, 2, 3, 4));
+
+        assertEquals(Map.of(1, "one", 2, "two", 3, "three"), result);
+        assertEquals(2, cache.frequency(1));
+        assertEquals(2, cache.frequency(2));
+        assertEquals(3, cache.frequency(3));
+    }
+
+    @Test
+    void testGetAllCountsRepeatedKeys() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+        cache.put(1, "one");
+
+        cache.getAll(Arrays.asList(1, 1, 1));
+
+        assertEquals(4, cache.frequency(1));
+        assertEquals(2, cache.freqNodeCount());
+    }
+
+    @Test
+    void testPutAllInsertsAndUpdates() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+        cache.put(1, "old");
+
+        Map<Integer, String> entries = new LinkedHashMap<>();
+        entries.put(1, "new");
+        entries.put(2, "two");
+        entries.put(3, "three");
+        cache.putAll(entries);
+
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.frequency(1));
+        assertEquals(1, cache.frequency(2));
+        assertEquals("new", cache.get(1));
+        assertEquals("three", cache.get(3));
+    }
+
+    @Test
+    void testPutAllEvictsLowestFrequencyForTheWholeBatch() {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(4);
+        for (int i = 1; i <= 4; i++) {
+            cache.put(i, i);
+        }
+        cache.get(3);
+        cache.get(4);
+
+        Map<Integer, Integer> entries = new LinkedHashMap<>();
+        entries.put(5, 5);
+        entries.put(6, 6);
+        cache.putAll(entries);
+
+        assertEquals(4, cache.size());
+        assertFalse(cache.containsKey(1));
+        assertFalse(cache.containsKey(2));
+        for (int key : Arrays.asList(3, 4, 5, 6)) {
+            assertTrue(cache.containsKey(key));
+        }
+    }
+
+    @Test
+    void testPutAllMakesRoomOnlyForKeysStillAbsent() {
+        AtomicReference<LFUCache<Integer, String>> reference = new AtomicReference<>();
+        AtomicBoolean racing = new AtomicBoolean();
+        // Stands in for another thread putting key 1 after putAll looked it up
+        Weigher<Integer, String> weigher = (key, value) -> {
+            if (key == 2 && racing.compareAndSet(true, false)) {
+                reference.get().put(1, "raced");
+            }
+            return 1;
+        };
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .maximumWeight(3)
+                .weigher(weigher)
+                .build();
+        reference.set(cache);
+        cache.put(10, "ten");
+        cache.put(11, "eleven");
+
+        Map<Integer, String> entries = new LinkedHashMap<>();
+        entries.put(1, "one");
+        entries.put(2, "two");
+        racing.set(true);
+        cache.putAll(entries);
+
+        // Key 1 was updated, so one eviction made room for key 2
+        assertEquals("one", cache.get(1));
+        assertEquals("two", cache.get(2));
+        assertFalse(cache.containsKey(10));
+        assertTrue(cache.containsKey(11));
+        assertEquals(3, cache.weightedSize());
+    }
+
+    @Test
+    void testPutAllLargerThanCapacityKeepsTheLastEntries() {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(3);
+        Map<Integer, Integer> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            entries.put(i, i);
+        }
+
+        cache.putAll(entries);
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.containsKey(7));
+        assertTrue(cache.containsKey(8));
+        assertTrue(cache.containsKey(9));
+    }
+
+    @Test
+    void testRemoveAll() {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(10);
+        for (int i = 0; i < 6; i++) {
+            cache.put(i, i);
+        }
+        cache.get(0);
+        cache.get(1);
+
+        cache.removeAll(Arrays.asList(0, 2, 4, 4, 99));
+
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey(0));
+        assertFalse(cache.containsKey(2));
+        assertFalse(cache.containsKey(4));
+        assertEquals(2, cache.frequency(1));
+    }
+
+    @Test
+    void testGetAllOfRemovedEntriesLinksNoFreqNode() {
+        AtomicReference<LFUCache<Integer, String>> reference = new AtomicReference<>();
+        AtomicBoolean removing = new AtomicBoolean();
+        // Stands in for another thread removing key 1 after getAll has read it
+        Ticker ticker = () -> {
+            if (removing.compareAndSet(true, false)) {
+                reference.get().remove(1);
+            }
+            return 0;
+        };
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .capacity(10)
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .ticker(ticker)
+                .build();
+        reference.set(cache);
+        cache.put(1, "one");
+        cache.put(2, "two");
+
+        removing.set(true);
+        cache.getAll(List.of(1));
+
+        assertFalse(cache.containsKey(1));
+        assertEquals(1, cache.freqNodeCount());
+    }
+
+    @Test
+    void testConcurrentBulkAndSingleKeyOperations() throws Exception {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(64);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 2000; i++) {
+                    List<Integer> keys = new ArrayList<>();
+                    for (int k = 0; k < 8; k++) {
+                        keys.add(random.nextInt(128));
+                    }
+                    switch (random.nextInt(5)) {
+                        case 0:
+                            Map<Integer, Integer> entries = new HashMap<>();
+                            keys.forEach(key -> entries.put(key, key));
+                            cache.putAll(entries);
+                            break;
+                        case 1:
+                            cache.removeAll(keys);
+                            break;
+                        case 2:
+                            cache.getAll(keys);
+                            break;
+                        case 3:
+                            cache.put(keys.get(0), keys.get(0));
+                            break;
+                        default:
+                            cache.get(keys.get(0));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue(cache.size() <= 64);
+        Map<Integer, Integer> all = cache.getAll(new ArrayList<>(List.of(0, 1, 2, 3)));
+        all.forEach((key, value) -> assertEquals(key, value));
+    }
+}
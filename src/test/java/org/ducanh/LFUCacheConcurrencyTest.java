@@ -0,0 +1,73 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Concurrency tests for LFU Cache implementation
+ * These tests hammer a shared cache from several threads and check its invariants afterwards
+ */
+public class LFUCacheConcurrencyTest {
+
+    @Test
+    void testConcurrentInsertsIntoFullCacheStayWithinCapacity() throws Exception {
+        // Inserts into a full cache evict inline, so no insert can stall waiting for room
+        LFUCache<Integer, Integer> cache = new LFUCache<>(64);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 10_000;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    cache.put(offset + i, i);
+                    assertTrue(cache.size() <= cache.capacity());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(64, cache.size());
+    }
+
+    @Test
+    void testConcurrentPromotionsAndRemovesReclaimFrequencyNodes() throws Exception {
+        // Buckets emptied by concurrent promotions and removes are unlinked on the way
+        LFUCache<Integer, Integer> cache = new LFUCache<>(32);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 50_000; i++) {
+                    int key = random.nextInt(48);
+                    int op = random.nextInt(10);
+                    if (op < 7) {
+                        cache.get(key);
+                    } else if (op < 9) {
+                        cache.put(key, i);
+                    } else {
+                        cache.remove(key);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue(cache.size() <= 32);
+        // Every live bucket holds at least one entry, apart from the head
+        assertTrue(cache.freqNodeCount() <= cache.size() + 1);
+    }
+}
@@ -501,4 +501,46 @@ public class LFUCacheEdgeCaseTest {
         assertFalse(cache.containsKey(4));
         assertTrue(cache.containsKey(5));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testEmptyFrequencyNodesAreReclaimed() {
+        // Frequency nodes left empty by promotion are unlinked, so the list stays
+        // bounded by the number of distinct frequencies in use
+        LFUCache<Integer, Integer> cache = new LFUCache<>(3);
+
+        cache.put(1, 10);
+        cache.put(2, 20);
+        for (int i = 0; i < 10_000; i++) {
+            cache.get(1);
+        }
+        // freq(1) = 10001, freq(2) = 1: head plus one node
+        assertEquals(2, cache.freqNodeCount());
+
+        cache.remove(1);
+        assertEquals(1, cache.freqNodeCount());
+        assertEquals(20, cache.get(2));  // freq(2) = 2, head is left empty but kept
+        assertEquals(2, cache.freqNodeCount());
+    }
+
+    @Test
+    void testPromotionAcrossReclaimedFrequencies() {
+        // After reclamation frequencies are no longer consecutive; promotion must
+        // still land on exactly freq + 1
+        LFUCache<Integer, Integer> cache = new LFUCache<>(3);
+
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.put(3, 30);
+        for (int i = 0; i < 4; i++) cache.get(1);  // freq(1) = 5
+        cache.get(2);                              // freq(2) = 2
+        cache.get(2);                              // freq(2) = 3, freq 2 reclaimed
+        cache.get(3);                              // freq(3) = 2, a new node below key 2
+
+        // Evicts 3 (freq=2); had it joined key 2 at freq=3, key 2 would go first
+        cache.put(4, 40);
+        assertFalse(cache.containsKey(3));
+        assertTrue(cache.containsKey(1));
+        assertTrue(cache.containsKey(2));
+        assertTrue(cache.containsKey(4));
+    }
+}
@@ -0,0 +1,175 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for per-entry TTL, expire-after-write and expire-after-access
+ * These tests drive a fake ticker so that expiry is deterministic
+ */
+public class LFUCacheExpirationTest {
+    private final AtomicLong time = new AtomicLong(1_000_000_000L);
+    private final Ticker ticker = time::get;
+
+    private void advance(Duration duration) {
+        time.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void testPerEntryTtl() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .ticker(ticker)
+                .build();
+
+        cache.put(1, 10, Duration.ofSeconds(10));
+        cache.put(2, 20);  // never expires
+
+        advance(Duration.ofSeconds(9));
+        assertEquals(10, cache.get(1));
+        advance(Duration.ofSeconds(2));
+        assertNull(cache.get(1));
+        assertFalse(cache.containsKey(1));
+        assertEquals(20, cache.get(2));
+
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testClearedTtlLeavesTheWheel() {
+        // Deadlines near NEVER must not overflow when the ticker is negative
+        time.set(-Duration.ofMinutes(1).toNanos());
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .ticker(ticker)
+                .build();
+
+        cache.put(1, 10, Duration.ofSeconds(1));
+        cache.put(1, 11);  // no TTL, so it never expires
+        advance(Duration.ofSeconds(2));
+        cache.cleanUp();
+
+        assertEquals(11, cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testExpireAfterWriteIsResetByUpdate() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .ticker(ticker)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+
+        cache.put(1, 10);
+        advance(Duration.ofSeconds(50));
+        cache.put(1, 11);
+        advance(Duration.ofSeconds(50));
+        assertEquals(11, cache.get(1));  // reads do not extend expire-after-write
+        advance(Duration.ofSeconds(11));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void testExpireAfterAccessIsExtendedByReads() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .ticker(ticker)
+                .expireAfterAccess(Duration.ofSeconds(30))
+                .build();
+
+        cache.put(1, 10);
+        cache.put(2, 20);
+        for (int i = 0; i < 5; i++) {
+            advance(Duration.ofSeconds(20));
+            assertEquals(10, cache.get(1));
+        }
+
+        cache.cleanUp();
+        assertTrue(cache.containsKey(1));
+        assertFalse(cache.containsKey(2));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testExpiredEntriesFreeCapacityBeforeEviction() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(2)
+                .ticker(ticker)
+                .build();
+
+        cache.put(1, 10, Duration.ofSeconds(1));
+        cache.get(1);
+        cache.get(1);      // freq(1) = 3, expires soon
+        cache.put(2, 20);  // freq(2) = 1, never expires
+
+        advance(Duration.ofSeconds(2));
+        cache.put(3, 30);
+
+        // LFU alone would have evicted 2; the expired entry goes instead
+        assertFalse(cache.containsKey(1));
+        assertTrue(cache.containsKey(2));
+        assertTrue(cache.containsKey(3));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testLongTtlCascadesThroughTheWheel() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .ticker(ticker)
+                .build();
+
+        cache.put(1, 10, Duration.ofHours(3));
+        cache.put(2, 20, Duration.ofDays(3));
+        for (int minutes = 0; minutes < 179; minutes++) {
+            advance(Duration.ofMinutes(1));
+            cache.cleanUp();
+        }
+        assertEquals(2, cache.size());
+
+        advance(Duration.ofMinutes(2));
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+        assertFalse(cache.containsKey(1));
+
+        advance(Duration.ofDays(3));
+        cache.cleanUp();
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    void testShorterTtlOnUpdateIsRescheduled() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .ticker(ticker)
+                .build();
+
+        cache.put(1, 10, Duration.ofHours(1));
+        cache.put(1, 11, Duration.ofSeconds(1));
+        advance(Duration.ofSeconds(2));
+        cache.cleanUp();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPutOnExpiredEntryStartsFresh() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .ticker(ticker)
+                .build();
+
+        cache.put(1, 10, Duration.ofSeconds(1));
+        cache.get(1);
+        cache.get(1);  // freq(1) = 3
+        advance(Duration.ofSeconds(2));
+        cache.put(1, 11);
+
+        assertEquals(1, cache.frequency(1));
+        assertEquals(11, cache.get(1));
+    }
+}
@@ -0,0 +1,59 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import java.util.concurrent.locks.ReentrantLock;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the memory each entry costs with JOL
+ * Keys and values are excluded, so the figures are the cache's own overhead
+ */
+public class LFUCacheFootprintTest {
+
+    private static final int ENTRIES = 10_000;
+
+    @Test
+    void testLfuCacheBytesPerEntry() {
+        // A caller-runs executor keeps the common pool out of the measured graph
+        LFUCache<Integer, Integer> cache = new LFUCacheBuilder<Integer, Integer>()
+                .capacity(ENTRIES)
+                .executor(Runnable::run)
+                .build();
+        Integer[] keys = new Integer[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            keys[i] = i;
+            cache.put(keys[i], keys[i]);
+        }
+        for (int i = 0; i < ENTRIES; i += 2) {
+            cache.get(keys[i]);  // spread the entries over two FreqNodes
+        }
+
+        GraphLayout layout = GraphLayout.parseInstance(cache);
+        long perEntry = perEntry(layout.subtract(GraphLayout.parseInstance((Object) keys)));
+        long nodeSize = ClassLayout.parseClass(Node.class).instanceSize();
+
+        // Locks belong to the cache and its FreqNodes, not to entries
+        assertTrue(layout.getClassCounts().count(ReentrantLock.class) < 16);
+        // Measured with compressed oops: a 72 byte Node plus a ConcurrentHashMap entry and table slot
+        assertEquals(72, nodeSize);
+        assertTrue(perEntry <= 110, "bytes per entry: " + perEntry);
+    }
+
+    @Test
+    void testLongLfuCacheBytesPerEntry() {
+        LongLFUCache cache = new LongLFUCache(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.put(i, i);
+        }
+
+        long perEntry = perEntry(GraphLayout.parseInstance(cache));
+
+        assertTrue(perEntry <= 34, "bytes per entry: " + perEntry);
+    }
+
+    private static long perEntry(GraphLayout layout) {
+        return layout.totalSize() / ENTRIES;
+    }
+}
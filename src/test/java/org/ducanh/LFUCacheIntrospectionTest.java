@@ -0,0 +1,120 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the frequency histogram and eviction history
+ * These tests check the reported distribution against known access patterns
+ */
+public class LFUCacheIntrospectionTest {
+
+    @Test
+    void testFrequencyHistogram() {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(10);
+        for (int i = 1; i <= 5; i++) {
+            cache.put(i, i);
+        }
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+
+        FrequencyHistogram histogram = cache.frequencyHistogram();
+
+        assertEquals(3, histogram.freqNodeCount());
+        assertArrayEquals(new int[]{1, 2, 3}, histogram.frequencies());
+        assertArrayEquals(new int[]{3, 1, 1}, histogram.counts());
+        assertArrayEquals(new long[]{3, 2}, histogram.logBuckets());
+        assertEquals(5, histogram.entryCount());
+        assertEquals(1.6, histogram.meanFrequency(), 1e-9);
+    }
+
+    @Test
+    void testEvictionHistoryRecordsFrequencyAndAge() {
+        AtomicLong time = new AtomicLong();
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(2)
+                .ticker(time::get)
+                .recordStats()
+                .build();
+
+        cache.put(1, 1);
+        cache.get(1);
+        time.addAndGet(Duration.ofSeconds(5).toNanos());
+        cache.put(2, 2);
+        time.addAndGet(Duration.ofSeconds(5).toNanos());
+        cache.put(3, 3);   // evicts 2: frequency 1, inserted 5s ago
+        cache.get(3);
+        cache.put(4, 4);   // evicts 1: frequency 2, inserted 10s ago
+
+        EvictionHistory history = cache.evictionHistory();
+        assertEquals(2, history.totalEvictions());
+        assertArrayEquals(new int[]{1, 2}, history.frequencies());
+        assertArrayEquals(new long[]{Duration.ofSeconds(5).toNanos(), Duration.ofSeconds(10).toNanos()},
+                history.ages());
+        assertEquals(0.5, history.unusedRatio());
+    }
+
+    @Test
+    void testEvictionHistoryKeepsTheMostRecent() {
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(1)
+                .recordStats()
+                .build();
+        for (int i = 0; i < 3000; i++) {
+            cache.put(i, i);
+        }
+
+        EvictionHistory history = cache.evictionHistory();
+        assertEquals(2999, history.totalEvictions());
+        assertEquals(1024, history.size());
+        assertEquals(1.0, history.averageFrequency());
+    }
+
+    @Test
+    void testEvictionHistoryIsEmptyWithoutStats() {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(1);
+        cache.put(1, 1);
+        cache.put(2, 2);
+
+        assertSame(EvictionHistory.EMPTY, cache.evictionHistory());
+    }
+
+    @Test
+    void testHistogramWalksWhileEntriesMove() throws Exception {
+        ShardedLFUCache<Integer, Integer> cache = new ShardedLFUCache<>(500, 4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            int seed = t;
+            writers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                while (running.get()) {
+                    int key = random.nextInt(1000);
+                    if (random.nextBoolean()) {
+                        cache.put(key, key);
+                    } else {
+                        cache.get(key);
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < 200; i++) {
+            FrequencyHistogram histogram = cache.frequencyHistogram();
+            assertTrue(histogram.entryCount() <= 600, histogram.toString());
+        }
+        running.set(false);
+        for (Future<?> writer : writers) {
+            writer.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(cache.size(), cache.frequencyHistogram().entryCount());
+    }
+}
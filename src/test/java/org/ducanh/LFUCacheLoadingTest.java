@@ -0,0 +1,154 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for loading through the cache
+ * These tests check that concurrent misses on a key share one load
+ */
+public class LFUCacheLoadingTest {
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> cache.get(1, key -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "value" + key;
+            })));
+        }
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<String> result : results) {
+            assertEquals("value1", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.frequency(1));
+    }
+
+    @Test
+    void testHitDoesNotCallLoader() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+        cache.put(1, "cached");
+
+        assertEquals("cached", cache.get(1, key -> fail("loader called on a hit")));
+        assertEquals(2, cache.frequency(1));
+    }
+
+    @Test
+    void testFailedLoadIsRethrownAndNotCached() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> cache.get(1, key -> {
+                    throw new IllegalStateException("backend down");
+                }));
+        assertEquals("backend down", thrown.getMessage());
+        assertFalse(cache.containsKey(1));
+
+        assertEquals("value", cache.get(1, key -> "value"));
+        assertTrue(cache.containsKey(1));
+    }
+
+    @Test
+    void testNullIsReturnedButNotCached() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+
+        assertNull(cache.get(1, key -> null));
+        assertFalse(cache.containsKey(1));
+    }
+
+    @Test
+    void testAsyncLoadsAreCoalesced() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .capacity(10)
+                .executor(tasks::add)
+                .build();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = cache.getAsync(1, key -> "v" + loads.incrementAndGet());
+        CompletableFuture<String> second = cache.getAsync(1, key -> "v" + loads.incrementAndGet());
+        assertFalse(first.isDone());
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        assertEquals("v1", first.get());
+        assertEquals("v1", second.get());
+        assertEquals("v1", cache.getAsync(1, key -> "unused").get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testLoadDoesNotOverwriteConcurrentPut() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+
+        String loaded = cache.get(1, key -> {
+            cache.put(key, "put");
+            return "loaded";
+        });
+
+        assertEquals("loaded", loaded);
+        assertEquals("put", cache.get(1));
+    }
+
+    @Test
+    void testLoadCountsAsOneAccess() {
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .capacity(10)
+                .tinyLfuAdmission(true)
+                .build();
+
+        assertEquals("value1", cache.get(1, key -> "value" + key));
+
+        // Only the doorkeeper bit: the insert did not record the access again
+        assertEquals(1, cache.sketchFrequency(1));
+        assertEquals(1, cache.frequency(1));
+    }
+
+    @Test
+    void testLoadThatLostTheRaceDoesNotPromote() {
+        List<Runnable> tasks = new ArrayList<>();
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .capacity(10)
+                .executor(tasks::add)
+                .build();
+
+        CompletableFuture<String> future = cache.getAsync(1, key -> "loaded");
+        cache.put(1, "put");
+        tasks.forEach(Runnable::run);
+
+        assertEquals("put", future.join());
+        assertEquals(1, cache.frequency(1));
+    }
+
+    @Test
+    void testRecursiveLoadOfTheSameKeyThrows() {
+        LFUCache<Integer, String> cache = new LFUCache<>(10);
+
+        assertThrows(IllegalStateException.class,
+                () -> cache.get(1, key -> cache.get(key, inner -> "inner")));
+        assertFalse(cache.containsKey(1));
+        assertEquals("value", cache.get(1, key -> "value"));
+    }
+}
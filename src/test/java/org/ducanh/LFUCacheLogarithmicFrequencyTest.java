@@ -0,0 +1,97 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.SplittableRandom;
+
+/**
+ * Tests for logarithmic frequencies
+ * Promotions are random, so these tests check ranges and ordering rather than exact counts
+ */
+public class LFUCacheLogarithmicFrequencyTest {
+
+    private static LFUCache<Integer, Integer> cache(int capacity, int factor, boolean bufferedReads) {
+        return LFUCache.<Integer, Integer>builder()
+                .capacity(capacity)
+                .logarithmicFrequency(factor)
+                .bufferedReads(bufferedReads)
+                .build();
+    }
+
+    @Test
+    void testFrequencyGrowsLogarithmicallyAndStops() {
+        LFUCache<Integer, Integer> cache = cache(10, 10, false);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.get(2);
+        // The first hit always counts
+        assertEquals(2, cache.frequency(2));
+
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(1, cache.get(1));
+        }
+        // About sqrt(2 * 100000 / 10) = 141
+        int frequency = cache.frequency(1);
+        assertTrue(frequency > 80 && frequency < 220, "frequency: " + frequency);
+
+        for (int i = 0; i < 1_000_000; i++) {
+            cache.get(1);
+        }
+        assertEquals(LFUCache.MAX_LOG_FREQUENCY, cache.frequency(1));
+    }
+
+    @Test
+    void testOrdersOfMagnitudeStillRank() {
+        LFUCache<Integer, Integer> cache = cache(3, 10, true);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        for (int i = 0; i < 20_000; i++) {
+            cache.get(1);
+            if (i % 100 == 0) {
+                cache.get(2);
+            }
+        }
+        cache.cleanUp();
+        assertTrue(cache.frequency(1) > cache.frequency(2));
+        assertTrue(cache.frequency(2) > cache.frequency(3));
+
+        cache.put(4, 4);
+        assertFalse(cache.containsKey(3));
+        cache.put(5, 5);
+        assertFalse(cache.containsKey(4));
+        assertTrue(cache.containsKey(1));
+        assertTrue(cache.containsKey(2));
+    }
+
+    @Test
+    void testSeededRandomRepeatsPromotions() {
+        int[] frequencies = new int[2];
+        for (int run = 0; run < 2; run++) {
+            LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                    .capacity(10)
+                    .logarithmicFrequency(10)
+                    .random(new SplittableRandom(7)::nextLong)
+                    .build();
+            cache.put(1, 1);
+            for (int i = 0; i < 100_000; i++) {
+                cache.get(1);
+            }
+            frequencies[run] = cache.frequency(1);
+        }
+        assertEquals(frequencies[0], frequencies[1]);
+        assertThrows(NullPointerException.class, () -> LFUCache.<Integer, Integer>builder().random(null));
+    }
+
+    @Test
+    void testEntriesComeBackCappedAndInvalidFactorsAreRejected() {
+        LFUCache<Integer, Integer> cache = cache(10, 1, false);
+        cache.putIfAbsent(1, 1, 10_000);
+        assertEquals(LFUCache.MAX_LOG_FREQUENCY, cache.frequency(1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> LFUCache.<Integer, Integer>builder().logarithmicFrequency(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> LFUCache.<Integer, Integer>builder().logarithmicFrequency(LFUCache.MAX_LOG_FACTOR + 1));
+    }
+}
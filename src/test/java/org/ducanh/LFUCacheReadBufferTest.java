@@ -0,0 +1,174 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for buffered reads
+ * These tests check that hits recorded in the read buffer reach the frequency list
+ */
+public class LFUCacheReadBufferTest {
+
+    private static LFUCache<Integer, Integer> cache(int capacity) {
+        return LFUCache.<Integer, Integer>builder()
+                .capacity(capacity)
+                .bufferedReads(true)
+                .build();
+    }
+
+    @Test
+    void testBufferedHitsAreAppliedOnDrain() {
+        LFUCache<Integer, Integer> cache = cache(10);
+        cache.put(1, 10);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(10, cache.get(1));
+        }
+        assertEquals(1, cache.frequency(1));
+
+        cache.cleanUp();
+        assertEquals(6, cache.frequency(1));
+    }
+
+    @Test
+    void testInsertAppliesBufferedHitsBeforeEviction() {
+        LFUCache<Integer, Integer> cache = cache(2);
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.get(1);
+        cache.get(1);
+
+        cache.put(3, 30);
+
+        assertTrue(cache.containsKey(1));
+        assertFalse(cache.containsKey(2));
+        assertTrue(cache.containsKey(3));
+    }
+
+    @Test
+    void testFullBufferDrainsAndDropsOnlyTheOverflow() {
+        LFUCache<Integer, Integer> cache = cache(10);
+        cache.put(1, 10);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.get(1);
+        }
+        cache.cleanUp();
+
+        // A read that finds its stripe full is dropped after triggering the drain
+        int frequency = cache.frequency(1);
+        assertTrue(frequency > 900 && frequency <= 1001, "frequency " + frequency);
+    }
+
+    @Test
+    void testRemovedEntryInBufferIsNotPromoted() {
+        LFUCache<Integer, Integer> cache = cache(10);
+        cache.put(1, 10);
+        cache.get(1);
+        cache.remove(1);
+
+        cache.cleanUp();
+
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.freqNodeCount());
+    }
+
+    @Test
+    void testConcurrentReadsAndWrites() throws Exception {
+        LFUCache<Integer, Integer> cache = cache(100);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(200);
+                    if (random.nextInt(10) == 0) {
+                        cache.put(key, key);
+                    } else if (random.nextInt(50) == 0) {
+                        cache.remove(key);
+                    } else {
+                        Integer value = cache.get(key);
+                        assertTrue(value == null || value == key);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        cache.cleanUp();
+
+        assertTrue(cache.size() <= 100);
+        int live = 0;
+        for (int key = 0; key < 200; key++) {
+            if (cache.containsKey(key)) {
+                live++;
+                assertTrue(cache.frequency(key) >= 1);
+            }
+        }
+        assertEquals(cache.size(), live);
+    }
+
+    @Test
+    void testReadsSeeWholeWritesInOrder() throws Exception {
+        LFUCache<Integer, Integer> cache = cache(10);
+        cache.put(1, 0);
+        AtomicBoolean done = new AtomicBoolean();
+        Future<String> reader = Executors.newSingleThreadExecutor().submit(() -> {
+            int last = 0;
+            while (!done.get()) {
+                Integer value = cache.get(1);
+                if (value == null || value < last) {
+                    return "read " + value + " after " + last;
+                }
+                last = value;
+            }
+            return null;
+        });
+        for (int i = 1; i <= 100_000; i++) {
+            cache.put(1, i);
+        }
+        done.set(true);
+
+        assertNull(reader.get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testAccessDoesNotOverwriteANewerWriteDeadline() throws Exception {
+        AtomicLong time = new AtomicLong(1_000_000_000L);
+        LFUCache<Integer, Integer> cache = LFUCache.<Integer, Integer>builder()
+                .capacity(10)
+                .bufferedReads(true)
+                .expireAfterAccess(Duration.ofSeconds(10))
+                .ticker(time::get)
+                .build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        for (int round = 0; round < 200; round++) {
+            cache.put(1, round, Duration.ofSeconds(1));
+            AtomicBoolean done = new AtomicBoolean();
+            Future<?> reader = executor.submit(() -> {
+                while (!done.get()) {
+                    cache.get(1);
+                }
+            });
+            // A read racing this write must not bring back the old 1 second deadline
+            cache.put(1, round, Duration.ofHours(1));
+            done.set(true);
+            reader.get(30, TimeUnit.SECONDS);
+            time.addAndGet(Duration.ofSeconds(2).toNanos());
+
+            assertEquals(round, cache.get(1), "round " + round);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,121 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for removal listeners
+ * These tests check the reported causes and that delivery happens outside the cache's locks
+ */
+public class LFUCacheRemovalListenerTest {
+    private final List<String> removals = Collections.synchronizedList(new ArrayList<>());
+
+    private LFUCacheBuilder<Integer, String> builder(Executor executor) {
+        return LFUCache.<Integer, String>builder()
+                .capacity(2)
+                .executor(executor)
+                .removalListener((key, value, cause) -> removals.add(key + "=" + value + ":" + cause));
+    }
+
+    @Test
+    void testCauses() {
+        AtomicLong time = new AtomicLong();
+        LFUCache<Integer, String> cache = builder(Runnable::run).ticker(time::get).build();
+
+        cache.put(1, "a");
+        cache.put(1, "b");
+        cache.remove(1);
+        cache.put(2, "c", Duration.ofSeconds(1));
+        time.addAndGet(Duration.ofSeconds(2).toNanos());
+        cache.cleanUp();
+        cache.put(3, "d");
+        cache.put(4, "e");
+        cache.put(5, "f");
+        cache.removeAll(Arrays.asList(4, 5));
+
+        assertEquals(Arrays.asList("1=a:REPLACED", "1=b:EXPLICIT", "2=c:EXPIRED", "3=d:EVICTED"),
+                removals.subList(0, 4));
+        assertEquals(new HashSet<>(Arrays.asList("4=e:EXPLICIT", "5=f:EXPLICIT")),
+                new HashSet<>(removals.subList(4, 6)));
+    }
+
+    @Test
+    void testNotificationsAreDeliveredInOneBatch() {
+        List<Runnable> tasks = new ArrayList<>();
+        LFUCache<Integer, String> cache = builder(tasks::add).build();
+
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        cache.put(4, "d");
+        cache.clear();
+
+        assertEquals(1, tasks.size());
+        assertTrue(removals.isEmpty());
+        tasks.get(0).run();
+        assertEquals(4, removals.size());
+        assertTrue(removals.containsAll(Arrays.asList("1=a:EVICTED", "2=b:EVICTED", "3=c:EXPLICIT", "4=d:EXPLICIT")));
+
+        cache.put(5, "e");
+        cache.remove(5);
+        assertEquals(2, tasks.size());
+    }
+
+    @Test
+    void testListenerRunsWithoutCacheLocksHeld() throws Exception {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        AtomicReference<LFUCache<Integer, String>> cache = new AtomicReference<>();
+        cache.set(LFUCache.<Integer, String>builder()
+                .capacity(1)
+                .executor(Runnable::run)
+                .removalListener((key, value, cause) -> {
+                    if (key != 1) {
+                        return;
+                    }
+                    // Blocks on the insert lock if the evicting thread still held it
+                    try {
+                        other.submit(() -> cache.get().put(100, "from listener")).get(5, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .build());
+
+        cache.get().put(1, "a");
+        cache.get().put(2, "b");
+        other.shutdown();
+
+        assertTrue(cache.get().containsKey(100));
+    }
+
+    @Test
+    void testFailingListenerDoesNotDropLaterNotifications() {
+        List<Integer> delivered = new ArrayList<>();
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .capacity(10)
+                .executor(Runnable::run)
+                .removalListener((key, value, cause) -> {
+                    delivered.add(key);
+                    if (key == 1) {
+                        throw new IllegalStateException("listener failure");
+                    }
+                })
+                .build();
+        Thread.UncaughtExceptionHandler previous = Thread.currentThread().getUncaughtExceptionHandler();
+        Thread.currentThread().setUncaughtExceptionHandler((thread, e) -> { });
+        try {
+            cache.put(1, "a");
+            cache.put(2, "b");
+            cache.removeAll(Arrays.asList(1, 2));
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(previous);
+        }
+
+        assertEquals(2, delivered.size());
+    }
+}
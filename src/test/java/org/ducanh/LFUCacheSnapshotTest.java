@@ -0,0 +1,214 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for snapshot and restore
+ * Restored caches are compared with the original on frequencies and the next eviction
+ */
+public class LFUCacheSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRestoreKeepsValuesAndFrequencies() throws IOException {
+        LFUCache<Integer, String> cache = new LFUCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "v" + i);
+            for (int j = 0; j < i % 7; j++) {
+                cache.get(i);
+            }
+        }
+        Path path = directory.resolve("cache.snapshot");
+        cache.snapshot(path, Serializer.INTEGER, Serializer.STRING);
+
+        LFUCache<Integer, String> restored = LFUCache.restore(path, Serializer.INTEGER, Serializer.STRING);
+
+        assertEquals(100, restored.capacity());
+        assertEquals(100, restored.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(cache.frequency(i), restored.frequency(i));
+        }
+        assertEquals(cache.freqNodeCount(), restored.freqNodeCount());
+        // LRU order within a frequency survives, so both evict the same entry
+        cache.put(1000, "new");
+        restored.put(1000, "new");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(cache.containsKey(i), restored.containsKey(i));
+        }
+        assertEquals("v50", restored.get(50));
+    }
+
+    @Test
+    void testRestoreIntoSmallerCacheKeepsMostFrequent() throws IOException {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i);
+            for (int j = 0; j < i; j++) {
+                cache.get(i);
+            }
+        }
+        Path path = directory.resolve("cache.snapshot");
+        cache.snapshot(path, Serializer.INTEGER, Serializer.INTEGER);
+
+        LFUCache<Integer, Integer> restored = LFUCache.restore(path,
+                LFUCache.<Integer, Integer>builder().capacity(3), Serializer.INTEGER, Serializer.INTEGER);
+
+        assertEquals(3, restored.size());
+        for (int i = 7; i < 10; i++) {
+            assertEquals(i + 1, restored.frequency(i));
+        }
+    }
+
+    @Test
+    void testRestoreCapsLogarithmicFrequencies() throws IOException {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(10);
+        cache.putIfAbsent(1, 1, 1000);
+        cache.putIfAbsent(2, 2, 2000);
+        Path path = directory.resolve("cache.snapshot");
+        cache.snapshot(path, Serializer.INTEGER, Serializer.INTEGER);
+
+        LFUCache<Integer, Integer> restored = LFUCache.restore(path,
+                LFUCache.<Integer, Integer>builder().capacity(10).logarithmicFrequency(10),
+                Serializer.INTEGER, Serializer.INTEGER);
+
+        assertEquals(LFUCache.MAX_LOG_FREQUENCY, restored.frequency(1));
+        assertEquals(LFUCache.MAX_LOG_FREQUENCY, restored.frequency(2));
+        assertEquals(2, restored.freqNodeCount());
+    }
+
+    @Test
+    void testRestoreAcceptsBucketsOutOfOrder() throws IOException {
+        // Aging between two buckets of a snapshot can write a lower frequency after a higher one
+        Path path = directory.resolve("aged.snapshot");
+        try (SnapshotWriter writer = new SnapshotWriter(path, 10)) {
+            writer.writeBucket(5, 1);
+            writer.write(1, Serializer.INTEGER);
+            writer.write(1, Serializer.INTEGER);
+            writer.writeBucket(2, 1);
+            writer.write(2, Serializer.INTEGER);
+            writer.write(2, Serializer.INTEGER);
+        }
+
+        LFUCache<Integer, Integer> restored = LFUCache.restore(path, Serializer.INTEGER, Serializer.INTEGER);
+
+        assertEquals(5, restored.frequency(1));
+        assertEquals(2, restored.frequency(2));
+        assertArrayEquals(new int[]{2, 5}, restored.frequencyHistogram().frequencies());
+    }
+
+    @Test
+    void testWeightedSnapshotNeedsBuilder() throws IOException {
+        LFUCacheBuilder<String, String> builder = LFUCache.<String, String>builder()
+                .maximumWeight(100)
+                .weigher((key, value) -> value.length());
+        LFUCache<String, String> cache = builder.build();
+        cache.put("a", "x".repeat(40));
+        cache.put("b", "y".repeat(40));
+        Path path = directory.resolve("weighted.snapshot");
+        cache.snapshot(path, Serializer.STRING, Serializer.STRING);
+
+        assertThrows(IllegalArgumentException.class, () -> LFUCache.restore(path, Serializer.STRING, Serializer.STRING));
+        LFUCache<String, String> restored = LFUCache.restore(path, builder, Serializer.STRING, Serializer.STRING);
+        assertEquals(80, restored.weightedSize());
+    }
+
+    @Test
+    void testDamagedFilesAreRejected() throws IOException {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        Path path = directory.resolve("cache.snapshot");
+        cache.snapshot(path, Serializer.INTEGER, Serializer.INTEGER);
+        byte[] bytes = Files.readAllBytes(path);
+
+        Path truncated = directory.resolve("truncated.snapshot");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 20));
+        assertThrows(IOException.class, () -> LFUCache.restore(truncated, Serializer.INTEGER, Serializer.INTEGER));
+
+        Path other = directory.resolve("other.snapshot");
+        Files.writeString(other, "not a snapshot");
+        assertThrows(IOException.class, () -> LFUCache.restore(other, Serializer.INTEGER, Serializer.INTEGER));
+    }
+
+    @Test
+    void testFailedSnapshotDeletesPartialFile() throws IOException {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(10);
+        cache.put(1, 1);
+        Path path = directory.resolve("cache.snapshot");
+        cache.snapshot(path, Serializer.INTEGER, Serializer.INTEGER);
+        cache.put(2, 2);
+
+        Serializer<Integer> failing = new Serializer<>() {
+            @Override
+            public int size(Integer value) {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void write(Integer value, ByteBuffer buffer) {
+                throw new IllegalStateException("write failed");
+            }
+
+            @Override
+            public Integer read(ByteBuffer buffer, int length) {
+                return buffer.getInt();
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> cache.snapshot(path, Serializer.INTEGER, failing));
+
+        assertFalse(Files.exists(directory.resolve("cache.snapshot.partial")));
+        LFUCache<Integer, Integer> restored = LFUCache.restore(path, Serializer.INTEGER, Serializer.INTEGER);
+        assertEquals(1, restored.size());
+    }
+
+    @Test
+    void testSnapshotUnderTraffic() throws Exception {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(5_000);
+        for (int i = 0; i < 5_000; i++) {
+            cache.put(i, i * 3);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                while (running.get()) {
+                    int key = random.nextInt(8_000);
+                    if (cache.get(key) == null) {
+                        cache.put(key, key * 3);
+                    }
+                }
+            }));
+        }
+        Path path = directory.resolve("busy.snapshot");
+        for (int i = 0; i < 5; i++) {
+            cache.snapshot(path, Serializer.INTEGER, Serializer.INTEGER);
+        }
+        running.set(false);
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        LFUCache<Integer, Integer> restored = LFUCache.restore(path, Serializer.INTEGER, Serializer.INTEGER);
+        assertTrue(restored.size() > 0 && restored.size() <= 5_000);
+        for (int key = 0; key < 8_000; key++) {
+            Integer value = restored.get(key);
+            assertTrue(value == null || value == key * 3);
+        }
+    }
+}
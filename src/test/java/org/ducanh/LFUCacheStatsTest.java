@@ -0,0 +1,91 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+/**
+ * Tests for cache statistics
+ * These tests check the counters behind stats() and that they are off by default
+ */
+public class LFUCacheStatsTest {
+
+    private static LFUCache<Integer, Integer> cache(int capacity) {
+        return LFUCache.<Integer, Integer>builder()
+                .capacity(capacity)
+                .recordStats()
+                .build();
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        LFUCache<Integer, Integer> cache = cache(10);
+        cache.put(1, 1);
+
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+        cache.getAll(Arrays.asList(1, 2, 3));
+
+        CacheStats stats = cache.stats();
+        assertEquals(3, stats.hitCount());
+        assertEquals(3, stats.missCount());
+        assertEquals(6, stats.requestCount());
+        assertEquals(0.5, stats.hitRate());
+    }
+
+    @Test
+    void testEvictionsAreCountedButNotRemovals() {
+        LFUCache<Integer, Integer> cache = cache(2);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, i);
+        }
+        cache.remove(4);
+
+        assertEquals(3, cache.stats().evictionCount());
+    }
+
+    @Test
+    void testLoads() {
+        LFUCache<Integer, Integer> cache = cache(10);
+
+        cache.get(1, key -> key);
+        cache.get(1, key -> key);
+        assertThrows(IllegalStateException.class, () -> cache.get(2, key -> {
+            throw new IllegalStateException();
+        }));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(1, stats.loadFailureCount());
+        assertTrue(stats.totalLoadTime() >= 0);
+    }
+
+    @Test
+    void testDisabledByDefault() {
+        LFUCache<Integer, Integer> cache = new LFUCache<>(10);
+        cache.put(1, 1);
+        cache.get(1);
+        cache.get(2);
+
+        assertSame(CacheStats.EMPTY, cache.stats());
+    }
+
+    @Test
+    void testShardedStatsSumSegments() {
+        ShardedLFUCache<Integer, Integer> cache = new ShardedLFUCache<>(
+                LFUCache.<Integer, Integer>builder().capacity(100).recordStats(), 4);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, i);
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.get(i);
+        }
+
+        CacheStats stats = cache.stats();
+        assertEquals(50, stats.hitCount());
+        assertEquals(50, stats.missCount());
+    }
+}
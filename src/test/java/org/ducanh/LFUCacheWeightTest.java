@@ -0,0 +1,126 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for weighted capacity
+ * These tests bound the cache by the total length of its string values
+ */
+public class LFUCacheWeightTest {
+
+    private static LFUCache<Integer, String> cache(long maximumWeight) {
+        return LFUCache.<Integer, String>builder()
+                .maximumWeight(maximumWeight)
+                .weigher((key, value) -> value.length())
+                .build();
+    }
+
+    @Test
+    void testEvictsLowestFrequencyUntilWeightFits() {
+        LFUCache<Integer, String> cache = cache(10);
+
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbb");
+        cache.get(1);
+        cache.put(3, "cc");
+        assertEquals(10, cache.weightedSize());
+
+        // Needs 5 more: evicts 2 (freq 1, older) and then 3 (freq 1)
+        cache.put(4, "ddddd");
+        assertTrue(cache.containsKey(1));
+        assertFalse(cache.containsKey(2));
+        assertFalse(cache.containsKey(3));
+        assertTrue(cache.containsKey(4));
+        assertEquals(9, cache.weightedSize());
+    }
+
+    @Test
+    void testUpdateThatGrowsAnEntryEvicts() {
+        LFUCache<Integer, String> cache = cache(10);
+
+        cache.put(1, "aaa");
+        cache.put(2, "bbb");
+        cache.put(3, "ccc");
+        cache.get(3);
+        cache.put(3, "cccccc");
+
+        // 3 went from weight 3 to 6 and is now the most frequent entry
+        assertFalse(cache.containsKey(1));
+        assertTrue(cache.containsKey(2));
+        assertEquals("cccccc", cache.get(3));
+        assertEquals(9, cache.weightedSize());
+
+        cache.put(3, "c");
+        assertEquals(4, cache.weightedSize());
+    }
+
+    @Test
+    void testEntryHeavierThanMaximumIsNotInserted() {
+        LFUCache<Integer, String> cache = cache(4);
+
+        cache.put(1, "aa");
+        cache.put(2, "too heavy");
+
+        assertFalse(cache.containsKey(2));
+        assertTrue(cache.containsKey(1));
+        assertEquals(2, cache.weightedSize());
+    }
+
+    @Test
+    void testRemoveAndClearReleaseWeight() {
+        LFUCache<Integer, String> cache = cache(100);
+
+        cache.put(1, "aaa");
+        cache.put(2, "bb");
+        cache.remove(1);
+        assertEquals(2, cache.weightedSize());
+        cache.clear();
+        assertEquals(0, cache.weightedSize());
+        assertEquals(Integer.MAX_VALUE, cache.capacity());
+    }
+
+    @Test
+    void testEntryCountStillBoundsWhenSet() {
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .capacity(2)
+                .maximumWeight(100)
+                .weigher((key, value) -> value.length())
+                .build();
+
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testInvalidWeights() {
+        LFUCache<Integer, String> cache = LFUCache.<Integer, String>builder()
+                .maximumWeight(10)
+                .weigher((key, value) -> -1)
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> cache.put(1, "a"));
+        assertThrows(IllegalArgumentException.class,
+                () -> LFUCache.<Integer, String>builder().maximumWeight(10).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> LFUCache.<Integer, String>builder().maximumWeight(0));
+    }
+
+    @Test
+    void testShardedCacheSplitsMaximumWeight() {
+        ShardedLFUCache<Integer, String> cache = new ShardedLFUCache<>(
+                LFUCache.<Integer, String>builder()
+                        .maximumWeight(1000)
+                        .weigher((key, value) -> value.length()),
+                4);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "0123456789");
+        }
+        assertEquals(4, cache.segmentCount());
+        assertTrue(cache.weightedSize() <= 1000);
+        assertEquals(cache.size() * 10L, cache.weightedSize());
+    }
+}
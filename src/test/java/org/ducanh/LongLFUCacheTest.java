@@ -0,0 +1,110 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+
+/**
+ * Tests for the primitive long-keyed caches
+ * These tests replay the same operations against LFUCache and compare the results
+ */
+public class LongLFUCacheTest {
+
+    @Test
+    void testBasicEviction() {
+        LongLFUCache cache = new LongLFUCache(2);
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.getOrDefault(1, -1);
+        cache.put(3, 30);
+
+        assertEquals(10, cache.getOrDefault(1, -1));
+        assertEquals(-1, cache.getOrDefault(2, -1));
+        assertEquals(30, cache.getOrDefault(3, -1));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testLruTieBreakAndUpdate() {
+        LongLFUCache cache = new LongLFUCache(3);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.put(1, 11);  // update counts as an access
+        cache.put(4, 4);   // evicts 2, the oldest at frequency 1
+
+        assertFalse(cache.containsKey(2));
+        assertEquals(11, cache.getOrDefault(1, -1));
+        assertEquals(3, cache.frequency(1));
+    }
+
+    @Test
+    void testMatchesLfuCache() {
+        Random random = new Random(42);
+        for (int capacity : new int[]{1, 7, 64}) {
+            LFUCache<Long, Long> reference = new LFUCache<>(capacity);
+            LongLFUCache cache = new LongLFUCache(capacity);
+            Long2ObjectLFUCache<Long> objects = new Long2ObjectLFUCache<>(capacity);
+            for (int i = 0; i < 50_000; i++) {
+                // Multiples of a large power of two collide in the low bits
+                long key = (long) random.nextInt(capacity * 3) << 20;
+                int operation = random.nextInt(10);
+                if (operation < 5) {
+                    Long expected = reference.get(key);
+                    assertEquals(expected == null ? -1 : expected, cache.getOrDefault(key, -1));
+                    assertEquals(expected, objects.get(key));
+                } else if (operation < 9) {
+                    reference.put(key, (long) i);
+                    cache.put(key, i);
+                    objects.put(key, (long) i);
+                } else {
+                    reference.remove(key);
+                    cache.remove(key);
+                    objects.remove(key);
+                }
+                assertEquals(reference.size(), cache.size());
+                assertEquals(reference.size(), objects.size());
+            }
+            for (long key = 0; key < capacity * 3; key++) {
+                assertEquals(reference.frequency(key << 20), cache.frequency(key << 20));
+            }
+        }
+    }
+
+    @Test
+    void testEmptyBucketsAreReused() {
+        Long2ObjectLFUCache<String> cache = new Long2ObjectLFUCache<>(4);
+        cache.put(1, "a");
+        for (int i = 0; i < 100; i++) {
+            cache.get(1);
+        }
+        assertEquals(2, cache.bucketCount());
+
+        cache.remove(1);
+        assertEquals(1, cache.bucketCount());
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    void testClear() {
+        Long2ObjectLFUCache<String> cache = new Long2ObjectLFUCache<>(4);
+        for (long i = 0; i < 4; i++) {
+            cache.put(i, "v" + i);
+            cache.get(i);
+        }
+
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertNull(cache.get(0));
+
+        cache.put(9, "nine");
+        assertEquals("nine", cache.get(9));
+        assertEquals(2, cache.bucketCount());
+    }
+
+    @Test
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new LongLFUCache(0));
+        assertThrows(IllegalArgumentException.class, () -> new Long2ObjectLFUCache<>(-1));
+    }
+}
@@ -0,0 +1,177 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for OffHeapLFUCache and its slab allocator
+ * Every test checks that the allocator holds exactly the blocks of live entries
+ */
+public class OffHeapLFUCacheTest {
+
+    @Test
+    void testValuesRoundTripAcrossBlocks() {
+        OffHeapLFUCache<Integer, byte[]> cache = new OffHeapLFUCache<>(1 << 20, 64, Serializer.BYTES);
+        // 60 is one block's payload, 61 needs two
+        int[] lengths = {0, 1, 60, 61, 1000, 10_000};
+        for (int length : lengths) {
+            cache.put(length, bytes(length, length));
+        }
+
+        for (int length : lengths) {
+            assertArrayEquals(bytes(length, length), cache.get(length));
+        }
+        assertNull(cache.get(-1));
+        assertEquals(cache.weightedSize(), cache.allocatedBytes());
+    }
+
+    @Test
+    void testEvictedBlocksAreReused() {
+        long maximumBytes = 64 * 1024;
+        OffHeapLFUCache<Integer, byte[]> cache = new OffHeapLFUCache<>(maximumBytes, Serializer.BYTES);
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, bytes(i, 100 + random.nextInt(2000)));
+            assertTrue(cache.weightedSize() <= maximumBytes);
+        }
+
+        assertTrue(cache.size() < 10_000);
+        // The bound plus the value being written and the last slab added for it
+        assertTrue(cache.reservedBytes() <= maximumBytes + 8192, "reserved: " + cache.reservedBytes());
+        assertEquals(cache.weightedSize(), cache.allocatedBytes());
+    }
+
+    @Test
+    void testReplaceRemoveAndClearFreeBlocks() {
+        OffHeapLFUCache<String, String> cache = new OffHeapLFUCache<>(1 << 20, Serializer.STRING);
+        cache.put("a", "x".repeat(5000));
+        cache.put("a", "small");
+        cache.put("b", "value");
+
+        assertEquals("small", cache.get("a"));
+        assertEquals(2 * OffHeapLFUCache.DEFAULT_BLOCK_SIZE, cache.allocatedBytes());
+
+        cache.remove("a");
+        assertEquals(OffHeapLFUCache.DEFAULT_BLOCK_SIZE, cache.allocatedBytes());
+        cache.clear();
+        assertEquals(0, cache.allocatedBytes());
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    void testValueLargerThanCacheIsNotStored() {
+        OffHeapLFUCache<Integer, byte[]> cache = new OffHeapLFUCache<>(4096, Serializer.BYTES);
+        cache.put(1, bytes(1, 100));
+        cache.put(1, bytes(1, 10_000));
+
+        assertFalse(cache.containsKey(1));
+        assertEquals(0, cache.allocatedBytes());
+        assertThrows(NullPointerException.class, () -> cache.put(2, null));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapLFUCache<>(0, Serializer.BYTES));
+    }
+
+    @Test
+    void testConcurrentReadsNeverSeeReusedBlocks() throws Exception {
+        OffHeapLFUCache<Integer, byte[]> cache = new OffHeapLFUCache<>(32 * 1024, 64, Serializer.BYTES);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    int key = random.nextInt(200);
+                    if (random.nextBoolean()) {
+                        cache.put(key, bytes(key, 50 + key * 5));
+                    } else {
+                        byte[] value = cache.get(key);
+                        if (value != null && !Arrays.equals(bytes(key, 50 + key * 5), value)) {
+                            failure.compareAndSet(null, "corrupt value for " + key);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertNull(failure.get());
+        assertEquals(cache.weightedSize(), cache.allocatedBytes());
+    }
+
+    @Test
+    void testReplacedKeysNeverReadAsMissing() throws Exception {
+        OffHeapLFUCache<Integer, byte[]> cache = new OffHeapLFUCache<>(1 << 20, 64, Serializer.BYTES);
+        for (int key = 0; key < 4; key++) {
+            cache.put(key, bytes(key, 100));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Future<?>> futures = new ArrayList<>();
+        // Two writers replace the keys while two readers read them; every key stays present
+        for (int t = 0; t < 4; t++) {
+            boolean writer = t < 2;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    int key = i & 3;
+                    if (writer) {
+                        cache.put(key, bytes(key, 100));
+                    } else if (cache.get(key) == null) {
+                        failure.compareAndSet(null, "missed " + key);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertNull(failure.get());
+        assertEquals(cache.weightedSize(), cache.allocatedBytes());
+    }
+
+    @Test
+    void testConcurrentGrowthKeepsEveryValue() throws Exception {
+        // 256 KiB slabs, added while four writers allocate at once
+        long maximumBytes = 4 << 20;
+        OffHeapLFUCache<Integer, byte[]> cache = new OffHeapLFUCache<>(maximumBytes, Serializer.BYTES);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int first = t * 200;
+            futures.add(executor.submit(() -> {
+                for (int key = first; key < first + 200; key++) {
+                    cache.put(key, bytes(key, 2000));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(800, cache.size());
+        for (int key = 0; key < 800; key++) {
+            assertArrayEquals(bytes(key, 2000), cache.get(key));
+        }
+        assertEquals(cache.weightedSize(), cache.allocatedBytes());
+        // A slab reserved by a writer that lost the race is dropped, not added
+        assertTrue(cache.reservedBytes() < cache.allocatedBytes() + (256 << 10),
+                "reserved: " + cache.reservedBytes());
+    }
+
+    private static byte[] bytes(int seed, int length) {
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = (byte) (seed * 31 + i);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,109 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tests for the sharded LFU Cache
+ * These tests check routing, aggregate sizing and per-segment eviction
+ */
+public class ShardedLFUCacheTest {
+
+    @Test
+    void testCapacityIsSplitAcrossSegments() {
+        ShardedLFUCache<Integer, Integer> cache = new ShardedLFUCache<>(100, 16);
+
+        assertEquals(16, cache.segmentCount());
+        assertEquals(100, cache.capacity());
+    }
+
+    @Test
+    void testSegmentCountNeverExceedsCapacity() {
+        // A segment needs room for at least one entry
+        ShardedLFUCache<Integer, Integer> cache = new ShardedLFUCache<>(3, 16);
+
+        assertEquals(2, cache.segmentCount());
+        assertEquals(3, cache.capacity());
+    }
+
+    @Test
+    void testBasicOperationsRouteToTheSameSegment() {
+        ShardedLFUCache<String, Integer> cache = new ShardedLFUCache<>(1000, 8);
+
+        for (int i = 0; i < 500; i++) {
+            cache.put("key" + i, i);
+        }
+        assertEquals(500, cache.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, cache.get("key" + i));
+        }
+
+        cache.remove("key7");
+        assertFalse(cache.containsKey("key7"));
+        assertEquals(499, cache.size());
+
+        cache.clear();
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    void testEvictionIsLfuWithinSegment() {
+        ShardedLFUCache<Integer, Integer> cache = new ShardedLFUCache<>(1000, 8);
+
+        // Keep a hot set busy while streaming cold keys through every segment
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+            cache.get(i);
+            cache.get(i);
+        }
+        for (int i = 1000; i < 10_000; i++) {
+            cache.put(i, i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(cache.containsKey(i), "hot key " + i + " should survive the scan");
+        }
+        assertTrue(cache.size() <= cache.capacity());
+    }
+
+    @Test
+    void testConcurrentInsertsStayWithinCapacity() throws Exception {
+        ShardedLFUCache<Integer, Integer> cache = new ShardedLFUCache<>(256, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 20_000;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    cache.put(offset + i, i);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(256, cache.size());
+    }
+
+    @Test
+    void testBulkOperationsAcrossSegments() {
+        ShardedLFUCache<Integer, Integer> cache = new ShardedLFUCache<>(1000, 8);
+        Map<Integer, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            entries.put(i, i * 10);
+        }
+
+        cache.putAll(entries);
+        assertEquals(100, cache.size());
+        assertEquals(entries, cache.getAll(entries.keySet()));
+
+        cache.removeAll(Arrays.asList(0, 1, 2));
+        assertEquals(97, cache.size());
+        assertEquals(Map.of(3, 30), cache.getAll(Arrays.asList(1, 3)));
+    }
+}
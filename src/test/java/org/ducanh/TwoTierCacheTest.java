@@ -0,0 +1,151 @@
+package org.ducanh;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Tests for the memory and disk tiers of TwoTierCache
+ * Records are 28 bytes: an int key and a 16 character value behind two length fields
+ */
+public class TwoTierCacheTest {
+
+    private static final int RECORD = 28;
+
+    @TempDir
+    Path directory;
+
+    private TwoTierCache<Integer, String> cache;
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void testEvictedEntriesSpillAndComeBack() throws IOException {
+        cache = cache(10, 1 << 20, 1 << 16);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, value(i));
+        }
+        // Readable from disk before the writer has appended them
+        assertEquals(value(0), cache.get(0));
+        cache.disk().flush();
+
+        assertEquals(10, cache.memorySize());
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(cache.containsKey(i));
+            assertEquals(value(i), cache.get(i));
+        }
+        assertEquals(100, cache.size());
+        assertEquals(10, cache.memorySize());
+    }
+
+    @Test
+    void testPromotionKeepsFrequency() throws IOException {
+        cache = cache(2, 1 << 20, 1 << 16);
+        cache.put(1, value(1));
+        for (int i = 0; i < 4; i++) {
+            cache.get(1);
+        }
+        cache.put(2, value(2));
+        for (int i = 0; i < 9; i++) {
+            cache.get(2);
+        }
+        // Evicts key 1 at frequency 5
+        cache.put(3, value(3));
+        cache.disk().flush();
+        assertFalse(cache.memory().containsKey(1));
+
+        assertEquals(value(1), cache.get(1));
+
+        // Back at 5 plus this read, so the new key 3 was the victim
+        assertEquals(6, cache.memory().frequency(1));
+        assertTrue(cache.disk().containsKey(3));
+        assertFalse(cache.disk().containsKey(1));
+    }
+
+    @Test
+    void testWritesDropTheDiskCopy() throws IOException {
+        cache = cache(1, 1 << 20, 1 << 16);
+        cache.put(1, value(1));
+        cache.put(2, value(2));
+        cache.put(3, value(3));
+        assertTrue(cache.disk().containsKey(1));
+        assertTrue(cache.disk().containsKey(2));
+
+        cache.remove(1);
+        cache.put(2, value(20));
+        cache.disk().flush();
+
+        assertFalse(cache.containsKey(1));
+        assertNull(cache.get(1));
+        assertEquals(value(20), cache.get(2));
+        // Evicted again, the newer value is the one on disk
+        cache.put(4, value(4));
+        assertEquals(value(20), cache.get(2));
+
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    void testCompactionRewritesLiveRecords() throws IOException {
+        // Ten records per segment
+        cache = cache(4, 1 << 20, 10 * RECORD);
+        for (int i = 0; i < 104; i++) {
+            cache.put(i, value(i));
+        }
+        cache.disk().flush();
+        assertEquals(100, cache.diskSize());
+        assertEquals(10, cache.disk().segmentCount());
+        for (int i = 0; i < 100; i++) {
+            if (i % 4 != 0) {
+                cache.remove(i);
+            }
+        }
+
+        cache.disk().compact();
+        // The segment being appended to is left for the next pass, once it is sealed
+        assertEquals(4, cache.disk().segmentCount());
+        cache.disk().compact();
+
+        // 25 live records fill three segments
+        assertEquals(3, cache.disk().segmentCount());
+        assertEquals(25 * RECORD, cache.diskBytes());
+        for (int i = 0; i < 100; i += 4) {
+            assertEquals(value(i), cache.get(i));
+        }
+    }
+
+    @Test
+    void testDiskBoundDropsOldestSegments() throws IOException {
+        cache = cache(4, 50 * RECORD, 10 * RECORD);
+        for (int i = 0; i < 204; i++) {
+            cache.put(i, value(i));
+        }
+        cache.disk().flush();
+
+        assertTrue(cache.diskBytes() <= 50 * RECORD);
+        assertEquals(cache.diskBytes() / RECORD, cache.diskSize());
+        assertFalse(cache.containsKey(0));
+        assertNull(cache.get(0));
+        assertEquals(value(199), cache.get(199));
+    }
+
+    private TwoTierCache<Integer, String> cache(int capacity, long diskBytes, int segmentBytes) throws IOException {
+        return new TwoTierCache<>(LFUCache.<Integer, String>builder().capacity(capacity), directory, diskBytes,
+                segmentBytes, Serializer.INTEGER, Serializer.STRING);
+    }
+
+    private static String value(int i) {
+        return String.format("value-%010d", i);
+    }
+}